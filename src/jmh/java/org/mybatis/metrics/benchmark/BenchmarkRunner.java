@@ -0,0 +1,35 @@
+package org.mybatis.metrics.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark in this package at 1, 4, 16 and 64 threads with the GC profiler,
+ * so each result line carries {@code gc.alloc.rate.norm} (bytes allocated per operation).
+ * <p>
+ * Usage: {@code mvn -Pbenchmark test-compile exec:exec}. When started directly, an optional
+ * first argument restricts the run to benchmarks matching that regex.
+ */
+public class BenchmarkRunner {
+
+    private static final int[] THREADS = { 1, 4, 16, 64 };
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*";
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .result("target/jmh-" + threads + "-threads.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
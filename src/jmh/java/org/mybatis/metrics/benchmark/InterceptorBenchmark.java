@@ -0,0 +1,144 @@
+package org.mybatis.metrics.benchmark;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.mybatis.metrics.MyBatisInterceptor;
+import org.mybatis.metrics.MybatisMetricsInterceptor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-statement overhead of the interceptors against a bare {@link Executor}.
+ * All threads share one executor chain and one statement, which is the worst case for
+ * contention on the per-statement meters.
+ * <p>
+ * The {@link MyBatisInterceptor} benchmarks run for every combination of {@code sampling},
+ * {@code phases} and {@code asyncRecording}. The stub executor creates no statement handlers,
+ * so {@code phases} measures the per-call execution context rather than the phase timers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterceptorBenchmark {
+
+    private static final String STATEMENT_ID = "org.mybatis.metrics.benchmark.UserMapper.selectById";
+
+    private MappedStatement selectStatement;
+    private MappedStatement updateStatement;
+    private Executor bare;
+    private Executor metricsInterceptor;
+
+    @Setup
+    public void setup() {
+        Configuration configuration = new Configuration();
+        selectStatement = statement(configuration, STATEMENT_ID, SqlCommandType.SELECT);
+        updateStatement = statement(configuration, "org.mybatis.metrics.benchmark.UserMapper.updateById", SqlCommandType.UPDATE);
+        bare = new StubExecutor();
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        MybatisMetricsInterceptor metrics = new MybatisMetricsInterceptor();
+        metrics.bindTo(registry);
+        metricsInterceptor = wrap(metrics);
+    }
+
+    @Benchmark
+    public List<Object> queryBare() throws SQLException {
+        return bare.query(selectStatement, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    }
+
+    @Benchmark
+    public List<Object> queryMyBatisInterceptor(MyBatisInterceptorState state) throws SQLException {
+        return state.executor.query(selectStatement, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    }
+
+    @Benchmark
+    public List<Object> queryMybatisMetricsInterceptor() throws SQLException {
+        return metricsInterceptor.query(selectStatement, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    }
+
+    @Benchmark
+    public int updateBare() throws SQLException {
+        return bare.update(updateStatement, null);
+    }
+
+    @Benchmark
+    public int updateMyBatisInterceptor(MyBatisInterceptorState state) throws SQLException {
+        return state.executor.update(updateStatement, null);
+    }
+
+    @Benchmark
+    public int updateMybatisMetricsInterceptor() throws SQLException {
+        return metricsInterceptor.update(updateStatement, null);
+    }
+
+    @Benchmark
+    public boolean queryCursorBare() throws SQLException, IOException {
+        try (Cursor<Object> cursor = bare.queryCursor(selectStatement, null, RowBounds.DEFAULT)) {
+            return cursor.isConsumed();
+        }
+    }
+
+    @Benchmark
+    public boolean queryCursorMyBatisInterceptor(MyBatisInterceptorState state) throws SQLException, IOException {
+        try (Cursor<Object> cursor = state.executor.queryCursor(selectStatement, null, RowBounds.DEFAULT)) {
+            return cursor.isConsumed();
+        }
+    }
+
+    /**
+     * A {@link MyBatisInterceptor} chain per combination of the recording settings; each
+     * combination runs in its own fork, so async recorder threads do not carry over.
+     */
+    @State(Scope.Benchmark)
+    public static class MyBatisInterceptorState {
+
+        @Param({"false", "true"})
+        public boolean sampling;
+
+        @Param({"false", "true"})
+        public boolean phases;
+
+        @Param({"false", "true"})
+        public boolean asyncRecording;
+
+        private Executor executor;
+
+        @Setup
+        public void setup() {
+            Properties properties = new Properties();
+            properties.setProperty("sampling", String.valueOf(sampling));
+            properties.setProperty("phases", String.valueOf(phases));
+            properties.setProperty("asyncRecording", String.valueOf(asyncRecording));
+            MyBatisInterceptor myBatis = new MyBatisInterceptor();
+            myBatis.setProperties(properties);
+            myBatis.bindTo(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+            executor = wrap(myBatis);
+        }
+
+    }
+
+    private static Executor wrap(Interceptor interceptor) {
+        return (Executor) interceptor.plugin(new StubExecutor());
+    }
+
+    private static MappedStatement statement(Configuration configuration, String id, SqlCommandType commandType) {
+        return new MappedStatement.Builder(configuration, id,
+                new StaticSqlSource(configuration, "select 1"), commandType).build();
+    }
+
+}
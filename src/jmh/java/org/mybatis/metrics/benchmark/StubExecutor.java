@@ -0,0 +1,131 @@
+package org.mybatis.metrics.benchmark;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Executor that does no work, so that a benchmark measures only the plugin overhead.
+ */
+public class StubExecutor implements Executor {
+
+    private static final List<Object> RESULT = Collections.singletonList(new Object());
+
+    @Override
+    public int update(MappedStatement ms, Object parameter) {
+        return 1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql) {
+        return (List<E>) RESULT;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) {
+        return (List<E>) RESULT;
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) {
+        return new EmptyCursor<>();
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void commit(boolean required) {
+    }
+
+    @Override
+    public void rollback(boolean required) {
+    }
+
+    @Override
+    public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+        return CacheKey.NULL_CACHE_KEY;
+    }
+
+    @Override
+    public boolean isCached(MappedStatement ms, CacheKey key) {
+        return false;
+    }
+
+    @Override
+    public void clearLocalCache() {
+    }
+
+    @Override
+    public void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType) {
+    }
+
+    @Override
+    public Transaction getTransaction() {
+        return null;
+    }
+
+    @Override
+    public void close(boolean forceRollback) {
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    @Override
+    public void setExecutorWrapper(Executor executor) {
+    }
+
+    /**
+     * A cursor over no rows.
+     */
+    private static class EmptyCursor<E> implements Cursor<E> {
+
+        private boolean closed;
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return true;
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return Collections.emptyIterator();
+        }
+
+    }
+
+}
@@ -0,0 +1,230 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves the recording of executions off the calling threads. There is one recorder per
+ * {@code Configuration}, see {@link ConfigurationMetrics}.
+ * <p>
+ * Every calling thread writes {@code (statement index, weight, status, nanos)} as primitives into its
+ * own {@link RecordRing}, so the caller touches no shared meter. One daemon thread drains all
+ * rings every {@code drainInterval} and records into the {@link StatementMetrics}; executions
+ * that find their ring full are dropped and counted, and so are executions whose recording
+ * throws. Reading the {@code mybatis.async.pending} gauge drains synchronously, so meters
+ * collected after it in a scrape are current; the others lag by at most one drain interval.
+ * <p>
+ * {@link #close()} stops the thread and records what is buffered. A caller that buffered
+ * concurrently with it sees the recorder stopped right after and flushes itself, so no
+ * execution is left behind in a ring.
+ *
+ * @author DL.Wan
+ */
+@Slf4j
+public class AsyncRecorder {
+
+    /**
+     * nanos 为此值表示未被采样、只计数的调用
+     */
+    private static final long COUNT_ONLY = -1L;
+    private static final int STATUS_BITS = 8;
+    private static final long STATUS_MASK = (1L << STATUS_BITS) - 1;
+    /**
+     * 采样权重（采样间隔，最大 2^16）位于 status 之上
+     */
+    private static final int WEIGHT_BITS = 17;
+    private static final long WEIGHT_MASK = (1L << WEIGHT_BITS) - 1;
+    private static final int INDEX_SHIFT = STATUS_BITS + WEIGHT_BITS;
+    /**
+     * 记录失败时最多每分钟输出一次日志
+     */
+    private static final long ERROR_LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final MybatisMetricsStatusEnum[] STATUSES = MybatisMetricsStatusEnum.values();
+
+    private final int ringCapacity;
+    private final long drainIntervalNanos;
+    private final List<RecordRing> rings = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<RecordRing> ring = ThreadLocal.withInitial(this::newRing);
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final MeterRegistry registry;
+    private final List<Meter> meters;
+    private final Thread drainer;
+    private final RecordRing.EntryConsumer consumer = this::recordEntry;
+    private volatile StatementMetrics[] statements = new StatementMetrics[0];
+    private volatile boolean running = true;
+
+    /**
+     * 以下字段只在持有锁的 flush 中访问
+     */
+    private StatementMetrics[] draining;
+    private long drainNanos;
+    private long lastErrorLogNanos;
+
+    /**
+     * @param ringCapacity executions buffered per thread, rounded up to a power of two
+     * @param drainInterval how often the rings are drained
+     * @param unit the unit of {@code drainInterval}
+     * @param registry the registry to register the recorder's own meters with
+     * @param tags the tags of the configuration whose executions it records, see {@link StatementTags}
+     */
+    public AsyncRecorder(int ringCapacity, long drainInterval, TimeUnit unit, MeterRegistry registry, Tags tags) {
+        this.ringCapacity = Integer.highestOneBit(Math.max(2, ringCapacity) - 1) << 1;
+        this.drainIntervalNanos = unit.toNanos(drainInterval);
+        this.registry = registry;
+        this.lastErrorLogNanos = System.nanoTime() - ERROR_LOG_INTERVAL_NANOS;
+        this.meters = Arrays.asList(
+                FunctionCounter.builder(MybatisMetrics.METRIC_NAME_ASYNC_DROPPED, dropped, LongAdder::sum)
+                        .description("Executions not recorded because the recording buffer of their thread was full")
+                        .tags(tags)
+                        .register(registry),
+                FunctionCounter.builder(MybatisMetrics.METRIC_NAME_ASYNC_ERRORS, errors, LongAdder::sum)
+                        .description("Buffered executions whose recording failed")
+                        .tags(tags)
+                        .register(registry),
+                Gauge.builder(MybatisMetrics.METRIC_NAME_ASYNC_PENDING, this, AsyncRecorder::drainOnRead)
+                        .description("Executions buffered but not yet recorded; reading it drains the buffers")
+                        .tags(tags)
+                        .strongReference(true)
+                        .register(registry));
+        this.drainer = new Thread(this::drainLoop, "mybatis-metrics-recorder");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Assign {@code metrics} the index its executions are buffered under.
+     * @param metrics the metrics of a statement
+     */
+    public synchronized void register(StatementMetrics metrics) {
+        StatementMetrics[] current = statements;
+        StatementMetrics[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = metrics;
+        metrics.setRecorder(this, current.length);
+        statements = updated;
+    }
+
+    /**
+     * Buffer a timed execution.
+     * @param metrics the statement, registered with this recorder
+     * @param status the outcome
+     * @param elapsedNanos the latency
+     * @param weight the sample interval it was timed at, see {@link StatementMetrics#sample()}
+     */
+    public void record(StatementMetrics metrics, MybatisMetricsStatusEnum status, long elapsedNanos, int weight) {
+        if (!running) {
+            //已停止（如重新绑定注册表后），直接记录
+            recordDirectly(metrics, status, elapsedNanos, weight, System.nanoTime());
+            return;
+        }
+        final long key = ((long) metrics.getRecorderIndex() << INDEX_SHIFT) | ((long) weight << STATUS_BITS) | status.ordinal();
+        if (!ring.get().offer(key, elapsedNanos)) {
+            dropped.increment();
+            return;
+        }
+        if (!running) {
+            //与 close 并发：其最后一次 flush 可能早于本次写入，由写入者自己补上
+            flush();
+        }
+    }
+
+    /**
+     * Buffer an execution that was not timed.
+     * @param metrics the statement, registered with this recorder
+     * @param status the outcome
+     */
+    public void count(StatementMetrics metrics, MybatisMetricsStatusEnum status) {
+        record(metrics, status, COUNT_ONLY, 0);
+    }
+
+    /**
+     * Record everything buffered so far.
+     */
+    public synchronized void flush() {
+        draining = statements;
+        drainNanos = System.nanoTime();
+        for (RecordRing r : rings) {
+            r.drain(consumer);
+            if (r.isAbandoned()) {
+                //线程已结束，缓冲区已清空，不再保留
+                rings.remove(r);
+            }
+        }
+    }
+
+    /**
+     * Stop the drain thread, record what is buffered and remove the recorder's own meters,
+     * so that a recorder created for the same configuration can register them again.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        flush();
+        meters.forEach(registry::remove);
+    }
+
+    private static void recordDirectly(StatementMetrics metrics, MybatisMetricsStatusEnum status, long nanos, int weight,
+            long nowNanos) {
+        if (nanos == COUNT_ONLY) {
+            metrics.count(status);
+        } else {
+            metrics.record(status, nowNanos - nanos, nowNanos, weight);
+        }
+    }
+
+    /**
+     * 单条记录失败不影响同一缓冲区中的其余记录
+     */
+    private void recordEntry(long key, long nanos) {
+        final int index = (int) (key >>> INDEX_SHIFT);
+        if (index >= draining.length) {
+            return;
+        }
+        try {
+            recordDirectly(draining[index], STATUSES[(int) (key & STATUS_MASK)], nanos,
+                    (int) ((key >>> STATUS_BITS) & WEIGHT_MASK), drainNanos);
+        } catch (RuntimeException e) {
+            errors.increment();
+            if (drainNanos - lastErrorLogNanos >= ERROR_LOG_INTERVAL_NANOS) {
+                lastErrorLogNanos = drainNanos;
+                log.warn("Failed to record a buffered execution of {}; further failures are counted in {} and logged at most once a minute",
+                        draining[index].getId(), MybatisMetrics.METRIC_NAME_ASYNC_ERRORS, e);
+            }
+        }
+    }
+
+    private double drainOnRead() {
+        flush();
+        long pending = 0;
+        for (RecordRing r : rings) {
+            pending += r.size();
+        }
+        return pending;
+    }
+
+    private void drainLoop() {
+        while (running) {
+            LockSupport.parkNanos(this, drainIntervalNanos);
+            flush();
+        }
+    }
+
+    private RecordRing newRing() {
+        RecordRing r = new RecordRing(ringCapacity, Thread.currentThread());
+        rings.add(r);
+        return r;
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of one {@link Configuration}, i.e. one {@code SqlSessionFactory}, that do not belong
+ * to a single statement: batch flushes, statements per transaction and the asynchronous
+ * recorder. All of them carry the tags {@link StatementTags} registered for the configuration.
+ *
+ * @author DL.Wan
+ */
+public class ConfigurationMetrics {
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final FlushMetrics flushMetrics;
+    private final DistributionSummary sessionStatements;
+    /**
+     * 异步记录模式下该 Configuration 语句的缓冲区，未开启 asyncRecording 时为 null
+     */
+    private final AsyncRecorder recorder;
+
+    /**
+     * @param settings bucket and recording settings
+     * @param registry the registry to register the meters with
+     * @param tags the tags of the configuration, see {@link StatementTags}
+     */
+    public ConfigurationMetrics(StatementMetricsSettings settings, MeterRegistry registry, Tags tags) {
+        this.registry = registry;
+        this.tags = tags;
+        this.flushMetrics = new FlushMetrics(settings, registry, tags);
+        this.sessionStatements = DistributionSummary.builder(MybatisMetrics.METRIC_NAME_SESSION_STATEMENTS)
+                .description("Statements executed per SqlSession transaction")
+                .tags(tags)
+                .serviceLevelObjectives(settings.getSessionStatementSlos())
+                .register(registry);
+        this.recorder = settings.isAsyncRecording()
+                ? new AsyncRecorder(settings.getAsyncBufferSize(), settings.getAsyncDrainMillis(), TimeUnit.MILLISECONDS, registry, tags)
+                : null;
+    }
+
+    public FlushMetrics getFlushMetrics() {
+        return flushMetrics;
+    }
+
+    /**
+     * @return the recorder buffering the executions of this configuration, or {@code null} to record directly
+     */
+    public AsyncRecorder getRecorder() {
+        return recorder;
+    }
+
+    public Tags getTags() {
+        return tags;
+    }
+
+    /**
+     * Record the statements one transaction executed.
+     * @param statements the number of statements
+     */
+    public void recordSession(int statements) {
+        sessionStatements.record(statements);
+    }
+
+    /**
+     * Count a transaction that ran one statement more than {@code sessionRepeatThreshold} times.
+     * @param statementId the id of the repeated statement
+     */
+    public void recordRepeatedStatement(String statementId) {
+        Counter.builder(MybatisMetrics.METRIC_NAME_SESSION_REPEATED_STATEMENTS)
+                .description("Transactions running one statement more than sessionRepeatThreshold times")
+                .tags(tags)
+                .tag("class", statementId)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Stop the recorder, if any, after recording what it buffered.
+     */
+    public void close() {
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
+}
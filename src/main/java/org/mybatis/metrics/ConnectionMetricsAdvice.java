@@ -0,0 +1,164 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Advice around {@code DataSource.getConnection()} and {@code getConnection(String, String)}
+ * that times connection acquisition and how long the connection is held until
+ * {@link Connection#close()}.
+ * <p>
+ * The connection is wrapped in a JDK proxy when the method is declared to return
+ * {@link Connection} or a subinterface. Pools declaring a narrower class, such as Druid's
+ * {@code DruidPooledConnection}, only get the acquire timer: a proxy of that class would cost
+ * a subclass instance per connection, and Druid reports the hold time itself.
+ *
+ * @author DL.Wan
+ */
+public class ConnectionMetricsAdvice implements MethodInterceptor {
+
+	public static final String METRIC_NAME_ACQUIRE = "mybatis.datasource.connection.acquire";
+	public static final String METRIC_NAME_HOLD = "mybatis.datasource.connection.hold";
+
+	/**
+	 * DataSource 定义的两个 getConnection 方法的参数
+	 */
+	static final Class<?>[][] GET_CONNECTION_PARAMETER_TYPES = { {}, { String.class, String.class } };
+
+	private final String dataSourceName;
+	private final ObjectProvider<MeterRegistry> registryProvider;
+	private final Duration[] slos;
+
+	private volatile Timer[] acquireTimers;
+	private volatile Timer holdTimer;
+
+	/**
+	 * @param dataSourceName the bean name, used as the {@code datasource} tag
+	 * @param registryProvider resolved on first use, since data sources are created before most registries
+	 * @param slos histogram buckets of both timers
+	 */
+	public ConnectionMetricsAdvice(String dataSourceName, ObjectProvider<MeterRegistry> registryProvider, List<Duration> slos) {
+		this.dataSourceName = dataSourceName;
+		this.registryProvider = registryProvider;
+		this.slos = slos.toArray(new Duration[0]);
+	}
+
+	/**
+	 * @param method a method of a data source
+	 * @return whether it implements one of the {@code getConnection} methods of {@link javax.sql.DataSource}
+	 */
+	static boolean isGetConnection(Method method) {
+		if (!"getConnection".equals(method.getName())) {
+			return false;
+		}
+		for (Class<?>[] parameterTypes : GET_CONNECTION_PARAMETER_TYPES) {
+			if (Arrays.equals(parameterTypes, method.getParameterTypes())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		if (acquireTimers == null) {
+			bind();
+		}
+		MybatisMetricsStatusEnum status = MybatisMetricsStatusEnum.fail;
+		final long start = System.nanoTime();
+		try {
+			Object result = invocation.proceed();
+			status = MybatisMetricsStatusEnum.success;
+			if (result instanceof Connection) {
+				return trackHold((Connection) result, invocation.getMethod().getReturnType());
+			}
+			return result;
+		} finally {
+			acquireTimers[status.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private synchronized void bind() {
+		if (acquireTimers != null) {
+			return;
+		}
+		MeterRegistry registry = registryProvider.getObject();
+		holdTimer = Timer.builder(METRIC_NAME_HOLD)
+				.description("Time a connection is held from acquire to close")
+				.tag("datasource", dataSourceName)
+				.serviceLevelObjectives(slos)
+				.register(registry);
+		Timer[] timers = new Timer[MybatisMetricsStatusEnum.values().length];
+		for (MybatisMetricsStatusEnum status : MybatisMetricsStatusEnum.values()) {
+			timers[status.ordinal()] = Timer.builder(METRIC_NAME_ACQUIRE)
+					.description("Time to acquire a connection from the data source")
+					.tag("datasource", dataSourceName)
+					.tag("status", status.getCode())
+					.serviceLevelObjectives(slos)
+					.register(registry);
+		}
+		acquireTimers = timers;
+	}
+
+	private Connection trackHold(Connection connection, Class<?> returnType) {
+		if (!returnType.isInterface()) {
+			//返回类型被收窄为具体类（如 DruidPooledConnection）：JDK 代理无法替代，持有时长由连接池自身统计
+			return connection;
+		}
+		return (Connection) Proxy.newProxyInstance(connection.getClass().getClassLoader(), new Class<?>[] { returnType },
+				new HoldTimeHandler(connection, holdTimer, System.nanoTime()));
+	}
+
+	/**
+	 * Records the hold time on the first {@code close()}.
+	 */
+	private static class HoldTimeHandler implements InvocationHandler {
+
+		private final Connection target;
+		private final Timer holdTimer;
+		private final long acquiredNanos;
+		private boolean closed;
+
+		HoldTimeHandler(Connection target, Timer holdTimer, long acquiredNanos) {
+			this.target = target;
+			this.holdTimer = holdTimer;
+			this.acquiredNanos = acquiredNanos;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					break;
+			}
+			if ("close".equals(method.getName()) && !closed) {
+				closed = true;
+				holdTimer.record(System.nanoTime() - acquiredNanos, TimeUnit.NANOSECONDS);
+			}
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+
+	}
+
+}
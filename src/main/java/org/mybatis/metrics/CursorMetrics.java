@@ -0,0 +1,85 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the {@code Cursor}s returned by one statement's {@code Executor.queryCursor}.
+ * Timing the call alone says little, since it returns before the first row is read; the
+ * durations here run from the start of that call to the first row and to the close. Cursor
+ * queries are therefore kept out of {@code mybatis.requests} and the slow query buffer.
+ *
+ * @author DL.Wan
+ */
+public class CursorMetrics {
+
+    private final Timer firstRow;
+    private final Timer duration;
+    private final DistributionSummary rows;
+    private final Counter abandoned;
+    private final AtomicLong open = new AtomicLong();
+
+    /**
+     * @param tags the statement tags
+     * @param latencySlos the latency buckets of the statement
+     * @param rowSlos the row count buckets
+     * @param registry the registry to register the meters with
+     */
+    public CursorMetrics(Tags tags, Duration[] latencySlos, double[] rowSlos, MeterRegistry registry) {
+        this.firstRow = Timer.builder(MybatisMetrics.METRIC_NAME_CURSOR_FIRST_ROW)
+                .description("Time from opening a cursor to its first row")
+                .tags(tags)
+                .serviceLevelObjectives(latencySlos)
+                .register(registry);
+        this.duration = Timer.builder(MybatisMetrics.METRIC_NAME_CURSOR_DURATION)
+                .description("Time from opening a cursor to its close or last row")
+                .tags(tags)
+                .serviceLevelObjectives(latencySlos)
+                .register(registry);
+        this.rows = DistributionSummary.builder(MybatisMetrics.METRIC_NAME_CURSOR_ROWS)
+                .description("Rows streamed per cursor")
+                .tags(tags)
+                .serviceLevelObjectives(rowSlos)
+                .register(registry);
+        this.abandoned = Counter.builder(MybatisMetrics.METRIC_NAME_CURSOR_ABANDONED)
+                .description("Cursors closed before all rows were read")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder(MybatisMetrics.METRIC_NAME_CURSOR_OPEN, open, AtomicLong::get)
+                .description("Cursors opened and not yet closed or fully read")
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    void opened() {
+        open.incrementAndGet();
+    }
+
+    void firstRow(long elapsedNanos) {
+        firstRow.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param elapsedNanos time since the cursor was opened
+     * @param rowCount the rows read
+     * @param consumed whether every row was read
+     */
+    void finished(long elapsedNanos, long rowCount, boolean consumed) {
+        open.decrementAndGet();
+        duration.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        rows.record(rowCount);
+        if (!consumed) {
+            abandoned.increment();
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Proxies every {@link DataSource} bean with a {@link ConnectionMetricsAdvice} on
+ * {@code getConnection}. The proxy subclasses the bean class, so beans stay injectable as
+ * {@code DruidDataSource}, {@code HikariDataSource} and so on.
+ * <p>
+ * A bean that already is a Spring AOP proxy gets the advice added to its advisors instead of
+ * a second proxy. Skipped are the excluded bean names, {@code AbstractRoutingDataSource}s,
+ * whose targets are data sources of their own and would be counted twice, other proxies,
+ * and classes whose {@code getConnection} a subclass cannot override.
+ *
+ * @author DL.Wan
+ */
+@Slf4j
+public class DataSourceMetricsPostProcessor implements BeanPostProcessor {
+
+	private static final boolean ROUTING_PRESENT = ClassUtils.isPresent(
+			"org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource", DataSourceMetricsPostProcessor.class.getClassLoader());
+
+	private final ObjectProvider<MeterRegistry> registryProvider;
+	private final List<Duration> slos;
+	private final Collection<String> excludedBeanNames;
+
+	/**
+	 * @param registryProvider resolved on first use
+	 * @param slos histogram buckets of the timers
+	 * @param excludedBeanNames names of data source beans not to proxy
+	 */
+	public DataSourceMetricsPostProcessor(ObjectProvider<MeterRegistry> registryProvider, List<Duration> slos,
+			Collection<String> excludedBeanNames) {
+		this.registryProvider = registryProvider;
+		this.slos = slos;
+		this.excludedBeanNames = excludedBeanNames;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (!(bean instanceof DataSource) || excludedBeanNames.contains(beanName)) {
+			return bean;
+		}
+		if (ROUTING_PRESENT && RoutingDataSourceKeys.isRouting((DataSource) bean)) {
+			//路由数据源的目标数据源各自被代理，避免重复统计
+			return bean;
+		}
+		StaticMethodMatcherPointcutAdvisor advisor = new StaticMethodMatcherPointcutAdvisor(
+				new ConnectionMetricsAdvice(beanName, registryProvider, slos)) {
+
+			@Override
+			public boolean matches(Method method, Class<?> targetClass) {
+				return ConnectionMetricsAdvice.isGetConnection(method);
+			}
+
+		};
+		if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+			//已是 Spring AOP 代理：加入其通知链，不再套一层代理
+			((Advised) bean).addAdvisor(0, advisor);
+			return bean;
+		}
+		if (AopUtils.isAopProxy(bean) || !isOverridable(bean.getClass())) {
+			log.info("DataSource bean '{}' of {} can not be proxied, connection metrics are not recorded for it", beanName,
+					bean.getClass().getName());
+			return bean;
+		}
+		ProxyFactory proxyFactory = new ProxyFactory(bean);
+		proxyFactory.setProxyTargetClass(true);
+		proxyFactory.addAdvisor(advisor);
+		return proxyFactory.getProxy(bean.getClass().getClassLoader());
+	}
+
+	/**
+	 * CGLIB 无法继承 final 类或重写 final 的 getConnection
+	 */
+	private static boolean isOverridable(Class<?> type) {
+		if (Modifier.isFinal(type.getModifiers())) {
+			return false;
+		}
+		for (Class<?>[] parameterTypes : ConnectionMetricsAdvice.GET_CONNECTION_PARAMETER_TYPES) {
+			Method method = ReflectionUtils.findMethod(type, "getConnection", parameterTypes);
+			if (method != null && Modifier.isFinal(method.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,86 @@
+package org.mybatis.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Point-in-time copy of the Druid getters of one data source.
+ * <p>
+ * Gauges read {@link #get(int)} instead of calling their getter. The first read after the
+ * snapshot expires calls every registered getter once, into a fresh {@code double[]}
+ * which is then published as a whole, so one scrape calls each getter (and takes
+ * Druid's locks) once and sees values that are consistent with each other.
+ *
+ * @author DL.Wan
+ */
+public class DruidPoolSnapshot {
+
+	private final long ttlNanos;
+	private final List<Getter<?>> getters = new ArrayList<>();
+	private volatile double[] values = new double[0];
+	private volatile long takenNanos;
+
+	/**
+	 * @param ttl how long a snapshot is served before the getters are called again
+	 */
+	public DruidPoolSnapshot(Duration ttl) {
+		this.ttlNanos = ttl.toNanos();
+	}
+
+	/**
+	 * Register a getter; must be called before the snapshot is first read.
+	 * @param source the object to read from
+	 * @param getter the getter
+	 * @return the index to pass to {@link #get(int)}
+	 */
+	public synchronized <T> int add(T source, ToDoubleFunction<T> getter) {
+		getters.add(new Getter<>(source, getter));
+		return getters.size() - 1;
+	}
+
+	/**
+	 * @param index the index returned by {@link #add}
+	 * @return the value of that getter in the current snapshot
+	 */
+	public double get(int index) {
+		double[] current = values;
+		if (index >= current.length || System.nanoTime() - takenNanos >= ttlNanos) {
+			current = take();
+		}
+		return current[index];
+	}
+
+	private synchronized double[] take() {
+		long now = System.nanoTime();
+		double[] current = values;
+		if (current.length == getters.size() && now - takenNanos < ttlNanos) {
+			return current;
+		}
+		double[] snapshot = new double[getters.size()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = getters.get(i).get();
+		}
+		takenNanos = now;
+		values = snapshot;
+		return snapshot;
+	}
+
+	private static class Getter<T> {
+
+		private final T source;
+		private final ToDoubleFunction<T> getter;
+
+		Getter(T source, ToDoubleFunction<T> getter) {
+			this.source = source;
+			this.getter = getter;
+		}
+
+		double get() {
+			return getter.applyAsDouble(source);
+		}
+
+	}
+
+}
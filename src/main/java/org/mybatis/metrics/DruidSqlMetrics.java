@@ -0,0 +1,276 @@
+package org.mybatis.metrics;
+
+import com.alibaba.druid.stat.JdbcDataSourceStat;
+import com.alibaba.druid.stat.JdbcSqlStat;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Per-SQL metrics of one Druid data source, kept in sync with
+ * {@link JdbcDataSourceStat#getSqlStatMap()} by {@link #refresh()}.
+ * <p>
+ * By default every SQL gets its own series labelled with the SQL text. With a positive
+ * {@code topK} only the heaviest SQL, ranked by execute count or execute time through a
+ * {@link SpaceSaving} sketch of {@code 2 * topK} counters, get their own series, labelled
+ * with a short stable hash of the SQL text; all other SQL fold into one {@code sql="other"}
+ * series per metric. Only SQL the sketch guarantees to be in the top-K are exported, so a
+ * SQL that just took over an evicted counter does not get a series of its own.
+ *
+ * @author DL.Wan
+ */
+@Slf4j
+public class DruidSqlMetrics {
+
+	public static final String OTHER = "other";
+
+	private static final long OTHER_CACHE_NANOS = 1_000_000_000L;
+
+	private static final List<SqlGauge> GAUGES = Arrays.asList(
+			new SqlGauge(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_COUNT, "Jdbc Sql Execute count", JdbcSqlStat::getExecuteCount, false),
+			new SqlGauge(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_SUCCESS_COUNT, "Jdbc Sql Execute success count", JdbcSqlStat::getExecuteSuccessCount, false),
+			new SqlGauge(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_ERROR_COUNT, "Jdbc Sql Execute error count", JdbcSqlStat::getErrorCount, false),
+			new SqlGauge(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_MILLIS_TOTAL, "Jdbc Sql Execute millis total", JdbcSqlStat::getExecuteMillisTotal, false),
+			new SqlGauge(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_MILLIS_MAX, "Jdbc Sql Execute millis max", JdbcSqlStat::getExecuteMillisMax, true),
+			new SqlGauge(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_BATCH_SIZE_TOTAL, "Jdbc Sql Execute Batch Size Total", JdbcSqlStat::getExecuteBatchSizeTotal, false),
+			new SqlGauge(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_BATCH_SIZE_MAX, "Jdbc Sql Execute Batch Size Max", JdbcSqlStat::getExecuteBatchSizeMax, true),
+			new SqlGauge(MybatisMetrics.METRIC_NAME_SQL_IN_TRANSACTION_COUNT, "Jdbc Sql In transaction count", JdbcSqlStat::getInTransactionCount, false),
+			new SqlGauge(MybatisMetrics.METRIC_NAME_SQL_CONCURRENT_MAX, "Jdbc Sql Concurrent max", JdbcSqlStat::getConcurrentMax, true));
+
+	private final MeterRegistry registry;
+	private final JdbcDataSourceStat dsStats;
+	private final List<Tag> tags;
+	private final MybatisMetricsProperties.SqlRankBy rankBy;
+	/**
+	 * 为 null 时不限制 SQL 数量
+	 */
+	private final SpaceSaving<String> sketch;
+	private final int topK;
+	/**
+	 * SQL -> 上次计入 sketch 时的排序值，用于只计入增量
+	 */
+	private final Map<String, Long> offered = new HashMap<>();
+	/**
+	 * 已单独输出的 SQL -> 注册时的 JdbcSqlStat 及其指标
+	 */
+	private final Map<String, Registration> registrations = new HashMap<>();
+	private volatile Set<String> tracked = new HashSet<>();
+	/**
+	 * refresh 专用锁，抓取时聚合 other 使用 this，互不阻塞
+	 */
+	private final Object refreshLock = new Object();
+
+	private volatile double[] otherValues = new double[GAUGES.size()];
+	private volatile long otherComputedNanos = System.nanoTime() - OTHER_CACHE_NANOS;
+
+	/**
+	 * @param registry the meter registry
+	 * @param dsStats the data source stats
+	 * @param tags the data source tags
+	 * @param topK the maximum number of SQL with their own series, 0 for no limit
+	 * @param rankBy how to rank SQL when {@code topK} is positive
+	 */
+	public DruidSqlMetrics(MeterRegistry registry, JdbcDataSourceStat dsStats, List<Tag> tags, int topK,
+			MybatisMetricsProperties.SqlRankBy rankBy) {
+		this.registry = registry;
+		this.dsStats = dsStats;
+		this.tags = tags;
+		this.rankBy = rankBy;
+		//多保留一倍计数器，使 top-K 之外有可比较的计数，能够判定 top-K 是否确定
+		this.sketch = topK > 0 ? new SpaceSaving<>(topK * 2) : null;
+		this.topK = topK;
+	}
+
+	/**
+	 * Register the {@code other} series, if bounded, and the series of the current SQL.
+	 */
+	public void bind() {
+		if (sketch != null) {
+			for (int i = 0; i < GAUGES.size(); i++) {
+				final int index = i;
+				SqlGauge gauge = GAUGES.get(i);
+				Gauge.builder(gauge.name, this, m -> m.otherValue(index))
+						.description(gauge.help)
+						.tags(tags)
+						.tag("sql", OTHER)
+						.strongReference(true)
+						.register(registry);
+			}
+		}
+		refresh();
+	}
+
+	/**
+	 * Diff the current SQL stats against the registered series: register series for SQL
+	 * that appeared (or entered the top-K), and remove the series of SQL that Druid evicted,
+	 * that were reset to a new {@link JdbcSqlStat}, or that left the top-K. The pass compares
+	 * stat identities only; meters are registered or removed just for the entries that changed.
+	 * <p>
+	 * Druid has no change counter, so the pass is linear in the SQL stat map, which Druid
+	 * bounds by {@code maxSqlSize} (1000 by default) and copies on every read anyway. It runs
+	 * on the refresher thread under its own lock: scrapes, which read the {@code other} series,
+	 * never wait for it, and a pass that changes nothing registers, removes and republishes nothing.
+	 */
+	public void refresh() {
+		synchronized (refreshLock) {
+			Map<String, JdbcSqlStat> sqlStats = dsStats.getSqlStatMap();
+			Set<String> wanted = sketch != null ? offer(sqlStats) : sqlStats.keySet();
+			boolean changed = false;
+			Iterator<Map.Entry<String, Registration>> iterator = registrations.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, Registration> entry = iterator.next();
+				Registration registration = entry.getValue();
+				if (!wanted.contains(entry.getKey()) || sqlStats.get(entry.getKey()) != registration.sqlStat) {
+					registration.meters.forEach(registry::remove);
+					iterator.remove();
+					changed = true;
+				}
+			}
+			for (String sql : wanted) {
+				JdbcSqlStat sqlStat = sqlStats.get(sql);
+				if (sqlStat != null && !registrations.containsKey(sql)) {
+					registrations.put(sql, register(sql, sqlStat));
+					changed = true;
+				}
+			}
+			if (changed) {
+				this.tracked = new HashSet<>(registrations.keySet());
+			}
+		}
+	}
+
+	/**
+	 * Feed the growth of every SQL since the last pass into the sketch.
+	 * @return the SQL guaranteed to be in the top-K
+	 */
+	private Set<String> offer(Map<String, JdbcSqlStat> sqlStats) {
+		for (Map.Entry<String, JdbcSqlStat> entry : sqlStats.entrySet()) {
+			String sql = entry.getKey();
+			long rank = rank(entry.getValue());
+			Long previous = offered.put(sql, rank);
+			long delta = previous == null || previous > rank ? rank : rank - previous;
+			if (delta > 0) {
+				sketch.offer(sql, delta);
+			}
+		}
+		offered.keySet().retainAll(sqlStats.keySet());
+		for (String sql : sketch.keys()) {
+			if (!sqlStats.containsKey(sql)) {
+				sketch.remove(sql);
+			}
+		}
+		return new HashSet<>(sketch.guaranteedTop(topK));
+	}
+
+	private Registration register(String sql, JdbcSqlStat sqlStat) {
+		String label = sql;
+		if (sketch != null) {
+			label = hash(sql);
+			log.debug("Tracking druid sql {} as sql=\"{}\"", sql, label);
+		}
+		List<Meter> meters = new ArrayList<>(GAUGES.size());
+		for (SqlGauge gauge : GAUGES) {
+			meters.add(Gauge.builder(gauge.name, sqlStat, gauge.measure)
+					.description(gauge.help)
+					.tags(tags)
+					.tag("sql", label)
+					.register(registry));
+		}
+		return new Registration(sqlStat, meters);
+	}
+
+	private long rank(JdbcSqlStat sqlStat) {
+		return rankBy == MybatisMetricsProperties.SqlRankBy.EXECUTE_COUNT ? sqlStat.getExecuteCount() : sqlStat.getExecuteMillisTotal();
+	}
+
+	/**
+	 * 同一次抓取中的多个 other 指标共用一次聚合结果
+	 */
+	private double otherValue(int index) {
+		long now = System.nanoTime();
+		if (now - otherComputedNanos >= OTHER_CACHE_NANOS) {
+			synchronized (this) {
+				if (now - otherComputedNanos >= OTHER_CACHE_NANOS) {
+					otherValues = aggregateOther();
+					otherComputedNanos = now;
+				}
+			}
+		}
+		return otherValues[index];
+	}
+
+	private double[] aggregateOther() {
+		Set<String> tracked = this.tracked;
+		double[] values = new double[GAUGES.size()];
+		dsStats.getSqlStatMap().forEach((sql, sqlStat) -> {
+			if (tracked.contains(sql)) {
+				return;
+			}
+			for (int i = 0; i < values.length; i++) {
+				SqlGauge gauge = GAUGES.get(i);
+				double value = gauge.measure.applyAsDouble(sqlStat);
+				values[i] = gauge.max ? Math.max(values[i], value) : values[i] + value;
+			}
+		});
+		return values;
+	}
+
+	/**
+	 * Short stable label for a SQL text: the 64-bit FNV-1a hash of its UTF-8 bytes, in hex.
+	 * @param sql the SQL text
+	 * @return the hash
+	 */
+	public static String hash(String sql) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : sql.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= (b & 0xff);
+			hash *= 0x100000001b3L;
+		}
+		return Long.toHexString(hash);
+	}
+
+	private static class SqlGauge {
+
+		private final String name;
+		private final String help;
+		private final ToDoubleFunction<JdbcSqlStat> measure;
+		/**
+		 * other 中按最大值而非求和合并
+		 */
+		private final boolean max;
+
+		SqlGauge(String name, String help, ToDoubleFunction<JdbcSqlStat> measure, boolean max) {
+			this.name = name;
+			this.help = help;
+			this.measure = measure;
+			this.max = max;
+		}
+
+	}
+
+	private static class Registration {
+
+		private final JdbcSqlStat sqlStat;
+		private final List<Meter> meters;
+
+		Registration(JdbcSqlStat sqlStat, List<Meter> meters) {
+			this.sqlStat = sqlStat;
+			this.meters = meters;
+		}
+
+	}
+
+}
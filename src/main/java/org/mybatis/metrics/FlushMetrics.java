@@ -0,0 +1,77 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Metrics of {@code Executor.flushStatements}, where a {@code BATCH} executor actually runs
+ * the statements that {@code update} only queued.
+ *
+ * @author DL.Wan
+ */
+public class FlushMetrics {
+
+    private final Timer[] latencies;
+    private final DistributionSummary statements;
+
+    /**
+     * @param settings bucket settings
+     * @param registry the registry to register the meters with
+     * @param tags the tags of the configuration, see {@link StatementTags}
+     */
+    public FlushMetrics(StatementMetricsSettings settings, MeterRegistry registry, Tags tags) {
+        MybatisMetricsStatusEnum[] statuses = MybatisMetricsStatusEnum.values();
+        this.latencies = new Timer[statuses.length];
+        for (MybatisMetricsStatusEnum status : statuses) {
+            latencies[status.ordinal()] = Timer.builder(MybatisMetrics.METRIC_NAME_FLUSH)
+                    .description("flushStatements latency")
+                    .tags(tags)
+                    .tag("status", status.getCode())
+                    .serviceLevelObjectives(settings.getLatencySlos())
+                    .register(registry);
+        }
+        this.statements = DistributionSummary.builder(MybatisMetrics.METRIC_NAME_FLUSH_STATEMENTS)
+                .description("Batched statements executed per flush")
+                .tags(tags)
+                .serviceLevelObjectives(settings.getRowSlos())
+                .register(registry);
+    }
+
+    /**
+     * Record one flush; flushes that ran nothing, as on non-batch executors, are ignored.
+     * @param status the outcome of the flush
+     * @param elapsedNanos the flush time
+     * @param results the results of the flush, {@code null} if it failed
+     * @param metricsFor resolves the metrics of a batched statement, {@code null} if it is not measured
+     */
+    public void record(MybatisMetricsStatusEnum status, long elapsedNanos, List<BatchResult> results,
+            Function<MappedStatement, StatementMetrics> metricsFor) {
+        if (results == null) {
+            latencies[status.ordinal()].record(elapsedNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        if (results.isEmpty()) {
+            return;
+        }
+        latencies[status.ordinal()].record(elapsedNanos, TimeUnit.NANOSECONDS);
+        long total = 0;
+        for (BatchResult result : results) {
+            int[] updateCounts = result.getUpdateCounts();
+            total += updateCounts.length;
+            StatementMetrics metrics = metricsFor.apply(result.getMappedStatement());
+            if (metrics != null) {
+                metrics.recordBatch(updateCounts);
+            }
+        }
+        statements.record(total);
+    }
+
+}
@@ -0,0 +1,177 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.apache.ibatis.cache.Cache;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decorator counting the hits, misses, puts and invalidations of a second-level {@link Cache},
+ * installed on every {@code MappedStatement} that uses it while the configuration is built.
+ * It only delegates until {@link #bindTo} registers its meters, and while instrumentation is
+ * switched off.
+ * <p>
+ * Invalidations are the {@code removeObject} and {@code clear} calls MyBatis makes on the
+ * cache, e.g. when a statement with {@code flushCache} commits. Entries an LRU, FIFO, SOFT or
+ * WEAK decorator drops to bound the cache happen inside the decorated cache and are not
+ * counted; {@code mybatis.cache.size} shows their effect.
+ *
+ * @author DL.Wan
+ */
+public class MetricsCache implements Cache {
+
+    private final Cache delegate;
+    private final Runnable onHit;
+    private final BooleanSupplier enabled;
+    private final Tags tags;
+    /**
+     * 绑定注册表前为 null，不计数
+     */
+    private volatile Meters meters;
+
+    /**
+     * @param delegate the cache to decorate
+     * @param onHit called on the querying thread for every hit
+     * @param enabled whether to count, read on every call, see {@link StatementFilter#isEnabled()}
+     * @param extraTags tags added to every meter, see {@link StatementTags}
+     */
+    public MetricsCache(Cache delegate, Runnable onHit, BooleanSupplier enabled, Tags extraTags) {
+        this.delegate = delegate;
+        this.onHit = onHit;
+        this.enabled = enabled;
+        this.tags = Tags.of("namespace", delegate.getId()).and(extraTags);
+    }
+
+    /**
+     * Register the meters with {@code registry} and count into them from now on.
+     * @param registry the registry
+     */
+    public void bindTo(MeterRegistry registry) {
+        this.meters = new Meters(registry, tags, delegate);
+    }
+
+    /**
+     * @return the decorated cache
+     */
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        final Meters current = countingMeters();
+        //TransactionalCache 提交时会为未命中的 key 写入 null，不计为写入
+        if (current != null && value != null) {
+            current.puts.increment();
+        }
+        delegate.putObject(key, value);
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Object value = delegate.getObject(key);
+        final Meters current = countingMeters();
+        if (current == null) {
+            return value;
+        }
+        if (value != null) {
+            current.hits.increment();
+            onHit.run();
+        } else {
+            current.misses.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        final Meters current = countingMeters();
+        if (current != null) {
+            current.removals.increment();
+        }
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        final Meters current = countingMeters();
+        if (current != null) {
+            current.clears.increment();
+        }
+        delegate.clear();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return delegate.getReadWriteLock();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return delegate.equals(o instanceof MetricsCache ? ((MetricsCache) o).delegate : o);
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    private Meters countingMeters() {
+        final Meters current = meters;
+        return current != null && enabled.getAsBoolean() ? current : null;
+    }
+
+    /**
+     * 一次绑定的全部指标，整体替换
+     */
+    private static final class Meters {
+
+        private final Counter hits;
+        private final Counter misses;
+        private final Counter puts;
+        private final Counter removals;
+        private final Counter clears;
+
+        Meters(MeterRegistry registry, Tags tags, Cache delegate) {
+            this.hits = counter(registry, MybatisMetrics.METRIC_NAME_CACHE_REQUESTS, "Second level cache lookups", tags, "result", "hit");
+            this.misses = counter(registry, MybatisMetrics.METRIC_NAME_CACHE_REQUESTS, "Second level cache lookups", tags, "result", "miss");
+            this.puts = Counter.builder(MybatisMetrics.METRIC_NAME_CACHE_PUTS)
+                    .description("Second level cache puts")
+                    .tags(tags)
+                    .register(registry);
+            this.removals = counter(registry, MybatisMetrics.METRIC_NAME_CACHE_INVALIDATIONS,
+                    "Second level cache entries removed or cleared by MyBatis, not capacity evictions", tags, "cause", "remove");
+            this.clears = counter(registry, MybatisMetrics.METRIC_NAME_CACHE_INVALIDATIONS,
+                    "Second level cache entries removed or cleared by MyBatis, not capacity evictions", tags, "cause", "clear");
+            Gauge.builder(MybatisMetrics.METRIC_NAME_CACHE_SIZE, delegate, Cache::getSize)
+                    .description("Objects in the second level cache")
+                    .tags(tags)
+                    .strongReference(true)
+                    .register(registry);
+        }
+
+        private static Counter counter(MeterRegistry registry, String name, String description, Tags tags, String key, String value) {
+            return Counter.builder(name)
+                    .description(description)
+                    .tags(tags)
+                    .tag(key, value)
+                    .register(registry);
+        }
+
+    }
+
+}
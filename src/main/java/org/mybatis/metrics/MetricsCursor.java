@@ -0,0 +1,93 @@
+package org.mybatis.metrics;
+
+import org.apache.ibatis.cursor.Cursor;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * A {@link Cursor} that reports to {@link CursorMetrics} when its first row is read and when
+ * it is finished, i.e. on the first of {@link #close()} and the end of the rows.
+ * <p>
+ * The iterator is allocated once per cursor and a row only costs a counter increment. A
+ * cursor is confined to the thread reading it, so the state needs no synchronization;
+ * {@code SqlSession.close()} closes the cursors it handed out through this wrapper, so
+ * a cursor left open by the caller is still reported as abandoned when its session closes.
+ *
+ * @author DL.Wan
+ */
+public class MetricsCursor<T> implements Cursor<T> {
+
+    private final Cursor<T> delegate;
+    private final CursorMetrics metrics;
+    private final long startNanos;
+    private long rows;
+    private boolean finished;
+
+    /**
+     * @param delegate the cursor returned by the executor
+     * @param metrics the metrics of the statement
+     * @param startNanos {@link System#nanoTime()} when {@code queryCursor} was called
+     */
+    public MetricsCursor(Cursor<T> delegate, CursorMetrics metrics, long startNanos) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.startNanos = startNanos;
+        metrics.opened();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return delegate.isConsumed();
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return delegate.getCurrentIndex();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<T> iterator = delegate.iterator();
+        return new Iterator<T>() {
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = iterator.hasNext();
+                if (!hasNext) {
+                    finish(true);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                T next = iterator.next();
+                if (rows++ == 0) {
+                    metrics.firstRow(System.nanoTime() - startNanos);
+                }
+                return next;
+            }
+
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish(delegate.isConsumed());
+        delegate.close();
+    }
+
+    private void finish(boolean consumed) {
+        if (!finished) {
+            finished = true;
+            metrics.finished(System.nanoTime() - startNanos, rows, consumed);
+        }
+    }
+
+}
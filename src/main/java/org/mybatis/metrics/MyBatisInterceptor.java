@@ -1,67 +1,736 @@
 package org.mybatis.metrics;
 
-import io.prometheus.client.SimpleTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.statement.RoutingStatementHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+@Slf4j
 @SuppressWarnings({"rawtypes"})
 @Intercepts(
         {
-                @Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class}),
-                @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
-                @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+                @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}),
+                @Signature(type = StatementHandler.class, method = "parameterize", args = {Statement.class}),
+                @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+                @Signature(type = StatementHandler.class, method = "update", args = {Statement.class}),
+                @Signature(type = ResultSetHandler.class, method = "handleResultSets", args = {Statement.class}),
         }
 )
-public class MyBatisInterceptor implements Interceptor {
+public class MyBatisInterceptor implements Interceptor, MeterBinder {
 
+    private volatile StatementMetricsSettings settings = StatementMetricsSettings.from(new Properties());
+
+    /**
+     * 开关及 include/exclude 规则
+     */
+    private volatile StatementFilter filter = new StatementFilter();
+
+    /**
+     * 最慢执行的采集缓冲区，slowQueries=0 时为 null
+     */
+    private volatile SlowQueryBuffer slowQueries = slowQueryBuffer(settings);
+
+    /**
+     * 由 bindTo 设置；此前不注册任何指标，执行器也不被包装
+     */
+    private volatile MeterRegistry registry;
+
+    /**
+     * 各 Configuration 的 flush、会话及异步记录指标，带该 Configuration 的标签
+     */
+    private final ConcurrentMap<Configuration, ConfigurationMetrics> configurations = new ConcurrentHashMap<>();
+
+    /**
+     * 每个语句的过滤结果及指标，MappedStatement 不重写 equals/hashCode，因此按实例缓存
+     */
+    private final ConcurrentMap<MappedStatement, StatementEntry> statements = new ConcurrentHashMap<>();
+
+    /**
+     * 区分 SqlSessionFactory/数据源的标签，在首次执行语句时解析
+     */
+    private volatile StatementTags statementTags = new StatementTags();
+
+    /**
+     * 当前线程正在执行的语句，StatementHandler/ResultSetHandler 的阶段据此记录，无需再查找
+     */
+    private final ThreadLocal<ExecutionContext> executionContext = ThreadLocal.withInitial(ExecutionContext::new);
+
+    /**
+     * 已装饰的二级缓存（同一 namespace 的语句共用一个 Cache）及已处理的 Configuration，由 instrumentCaches 维护
+     */
+    private final Map<Cache, MetricsCache> decoratedCaches = new IdentityHashMap<>();
+    private final Set<Configuration> instrumentedConfigurations = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * 指标注册失败的 Configuration，其语句不再统计，直到 bindTo 重新绑定
+     */
+    private final Set<Configuration> unavailableConfigurations = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Intercepts the phases of a statement; executor calls go through {@link ExecutorMetrics}.
+     */
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
+        return interceptPhase(invocation);
+    }
+
+    private Object interceptExecutor(Invocation invocation, ExecutorMetrics executor) throws Throwable {
+        switch (invocation.getMethod().getName()) {
+            case "flushStatements":
+                return flush(executor, invocation);
+            case "commit":
+                //commit 内部的 flushStatements 不经过插件：BATCH 执行器先经本插件 flush 以便计时，随后 commit 中的 flush 为空操作；
+                //已关闭的执行器直接 commit，由其抛出原有的异常
+                if (executor.batch && executor.configurationMetrics != null && filter.isEnabled()
+                        && !((Executor) invocation.getTarget()).isClosed()) {
+                    executor.proxy.flushStatements();
+                }
+                return invocation.proceed();
+            default:
+                break;
+        }
         final Object[] args = invocation.getArgs();
         if (args != null && args.length > 0) {
             final MappedStatement mappedStatement = (MappedStatement) args[0];
-            if (mappedStatement != null) {
-                final String className = mappedStatement.getId();
-                final String command = mappedStatement.getSqlCommandType().name();
-                String status = "";
-                //以类名和方法名为标签
-                String[] labelValues = new String[3];
-                labelValues[0] = className;
-                labelValues[1] = command;
-                labelValues[2] = status;
-                SimpleTimer startTimer = new SimpleTimer();
+            if (mappedStatement != null && executor.configurationMetrics == null) {
+                executor.configurationMetrics = configurationMetrics(mappedStatement.getConfiguration());
+            }
+            final StatementEntry entry = mappedStatement != null ? entryFor(mappedStatement) : null;
+            final StatementMetrics metrics = entry != null && filter.isIncluded(mappedStatement, entry.decision)
+                    ? entry.metrics() : null;
+            if (metrics != null) {
+                if (args.length == 3) {
+                    //游标查询返回时结果尚未读取，只记录 mybatis.cursor.*（到第一行及到关闭的耗时），不计入 requests 与慢查询
+                    final long start = System.nanoTime();
+                    return new MetricsCursor<>((Cursor<?>) proceed(invocation, metrics), metrics.cursorMetrics(), start);
+                }
+                MybatisMetricsStatusEnum status = MybatisMetricsStatusEnum.fail;
+                final int weight = metrics.sample();
+                if (weight == 0) {
+                    //未被采样的调用只计数，不计时
+                    try {
+                        Object result = proceed(invocation, metrics);
+                        status = MybatisMetricsStatusEnum.success;
+                        recordRows(args, result, metrics);
+                        return result;
+                    } finally {
+                        final AsyncRecorder asyncRecorder = metrics.getRecorder();
+                        if (asyncRecorder != null) {
+                            asyncRecorder.count(metrics, status);
+                        } else {
+                            metrics.count(status);
+                        }
+                    }
+                }
+                final long start = System.nanoTime();
                 try {
-                    status = MybatisMetricsStatusEnum.success.getCode();
-                    return invocation.proceed();
-                } catch (Throwable throwable) {
-                    status = MybatisMetricsStatusEnum.fail.getCode();
-                    throw throwable;
+                    Object result = proceed(invocation, metrics);
+                    status = MybatisMetricsStatusEnum.success;
+                    recordRows(args, result, metrics);
+                    return result;
                 } finally {
-                    labelValues[2] = status;
-                    MybatisMetrics.QUERY_MAX.labels(labelValues).set(startTimer.elapsedSeconds());
-                    MybatisMetrics.QUERY_SUMMARY.labels(labelValues).observe(startTimer.elapsedSeconds());
-                    MybatisMetrics.QUERY_COUNT.labels(labelValues).inc();
+                    final long end = System.nanoTime();
+                    final AsyncRecorder asyncRecorder = metrics.getRecorder();
+                    if (asyncRecorder != null) {
+                        asyncRecorder.record(metrics, status, end - start, weight);
+                    } else {
+                        metrics.record(status, start, end, weight);
+                    }
+                    captureSlowQuery(mappedStatement, args, end - start, end);
                 }
             }
         }
         return invocation.proceed();
     }
 
+    /**
+     * Proceed with the executor call, publishing the statement to the phase interceptions
+     * it triggers. The previous context is restored afterwards, since a result handler may
+     * run statements from within the result mapping of the outer statement.
+     */
+    private Object proceed(Invocation invocation, StatementMetrics metrics) throws Throwable {
+        if (!settings.isPhases() && !settings.isCacheMetrics()) {
+            return invocation.proceed();
+        }
+        final ExecutionContext context = executionContext.get();
+        final MappedStatement previousStatement = context.mappedStatement;
+        final StatementMetrics previousMetrics = context.metrics;
+        final long previousResultsNanos = context.resultsNanos;
+        final boolean previousPrepared = context.prepared;
+        final boolean previousCacheHit = context.cacheHit;
+        context.mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        context.metrics = metrics;
+        context.resultsNanos = 0;
+        context.prepared = false;
+        context.cacheHit = false;
+        try {
+            Object result = invocation.proceed();
+            final Object[] args = invocation.getArgs();
+            if (args.length > 3 && args[3] == Executor.NO_RESULT_HANDLER && !context.cacheHit) {
+                //未命中二级缓存、也未为本语句创建 StatementHandler，即由一级缓存返回
+                metrics.recordLocalCache(!context.prepared);
+            }
+            return result;
+        } finally {
+            context.mappedStatement = previousStatement;
+            context.metrics = previousMetrics;
+            context.resultsNanos = previousResultsNanos;
+            context.prepared = previousPrepared;
+            context.cacheHit = previousCacheHit;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BatchResult> flush(ExecutorMetrics executor, Invocation invocation) throws Throwable {
+        final ConfigurationMetrics metrics = executor.configurationMetrics;
+        if (metrics == null || !filter.isEnabled()) {
+            //尚未执行过语句（没有可 flush 的批量语句）或已关闭统计
+            return (List<BatchResult>) invocation.proceed();
+        }
+        MybatisMetricsStatusEnum status = MybatisMetricsStatusEnum.fail;
+        List<BatchResult> results = null;
+        final long start = System.nanoTime();
+        try {
+            results = (List<BatchResult>) invocation.proceed();
+            status = MybatisMetricsStatusEnum.success;
+            return results;
+        } finally {
+            metrics.getFlushMetrics().record(status, System.nanoTime() - start, results, this::includedMetricsFor);
+        }
+    }
+
+    /**
+     * 查询且未传入 ResultHandler 时，结果列表的大小即返回行数（含一级缓存命中）
+     */
+    private static void recordRows(Object[] args, Object result, StatementMetrics metrics) {
+        if (args.length > 3 && args[3] == Executor.NO_RESULT_HANDLER && result instanceof List) {
+            metrics.recordRows(((List) result).size());
+        }
+    }
+
+    private void captureSlowQuery(MappedStatement mappedStatement, Object[] args, long elapsedNanos, long endNanos) {
+        final SlowQueryBuffer buffer = slowQueries;
+        if (buffer != null && buffer.admits(elapsedNanos, endNanos)) {
+            buffer.add(new SlowQuery(mappedStatement.getId(), sqlOf(mappedStatement, args), elapsedNanos,
+                    Thread.currentThread().getName(), System.currentTimeMillis()), endNanos);
+        }
+    }
+
+    /**
+     * 只取带占位符的 SQL，不采集参数值
+     */
+    private static String sqlOf(MappedStatement mappedStatement, Object[] args) {
+        try {
+            BoundSql boundSql = args.length > 5 ? (BoundSql) args[5] : mappedStatement.getBoundSql(args[1]);
+            return boundSql.getSql().replaceAll("\\s+", " ").trim();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Object interceptPhase(Invocation invocation) throws Throwable {
+        final ExecutionContext context = executionContext.get();
+        final StatementMetrics metrics = context.metrics;
+        if (metrics == null) {
+            return invocation.proceed();
+        }
+        final MybatisMetricsPhaseEnum phase = phaseOf(invocation);
+        final long resultsBefore = context.resultsNanos;
+        final long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            if (phase == MybatisMetricsPhaseEnum.results) {
+                context.resultsNanos += elapsed;
+                metrics.recordPhase(phase, elapsed);
+            } else if (phase == MybatisMetricsPhaseEnum.execute) {
+                //StatementHandler.query 内部调用 handleResultSets，执行耗时不含结果映射
+                metrics.recordPhase(phase, elapsed - (context.resultsNanos - resultsBefore));
+            } else {
+                metrics.recordPhase(phase, elapsed);
+            }
+        }
+    }
+
+    private static MybatisMetricsPhaseEnum phaseOf(Invocation invocation) {
+        if (invocation.getTarget() instanceof ResultSetHandler) {
+            return MybatisMetricsPhaseEnum.results;
+        }
+        switch (invocation.getMethod().getName()) {
+            case "prepare":
+                return MybatisMetricsPhaseEnum.prepare;
+            case "parameterize":
+                return MybatisMetricsPhaseEnum.parameterize;
+            default:
+                return MybatisMetricsPhaseEnum.execute;
+        }
+    }
+
+    /**
+     * 在创建 StatementHandler 时记录即将 prepare 的 SQL 并计入会话：覆盖所有执行器及结果映射中的嵌套查询，
+     * 命中缓存的查询不会发往数据库，因此不计入
+     */
+    private void statementCreated(StatementHandler statementHandler, MappedStatement mappedStatement) {
+        final StatementEntry entry = mappedStatement != null ? entryFor(mappedStatement) : null;
+        if (entry != null && !filter.isIncluded(mappedStatement, entry.decision)) {
+            return;
+        }
+        final StatementMetrics metrics = entry != null && settings.isParameterShapes() ? entry.metrics() : null;
+        if (metrics != null) {
+            metrics.recordShape(statementHandler.getBoundSql());
+        }
+        final SessionTracker tracker = settings.isSessionTracking() ? SessionTracker.current() : null;
+        if (tracker != null) {
+            tracker.statementCreated(mappedStatement);
+        }
+    }
+
+    /**
+     * @return the metrics of the statement, or {@code null} if the filter excludes it or its meters are unavailable
+     */
+    private StatementMetrics includedMetricsFor(MappedStatement mappedStatement) {
+        final StatementEntry entry = entryFor(mappedStatement);
+        return filter.isIncluded(mappedStatement, entry.decision) ? entry.metrics() : null;
+    }
+
+    /**
+     * 会话跟踪器结束事务时调用，关闭统计后不再记录
+     */
+    private ConfigurationMetrics sessionMetricsFor(Configuration configuration) {
+        return filter.isEnabled() ? configurationMetrics(configuration) : null;
+    }
+
+    /**
+     * @return the statement a statement or result set handler was created for, {@code null} if unknown
+     */
+    private static MappedStatement mappedStatementOf(Object handler) {
+        handler = unwrapPlugins(handler);
+        if (handler instanceof RoutingStatementHandler) {
+            return (MappedStatement) SystemMetaObject.forObject(handler).getValue("delegate.mappedStatement");
+        }
+        if (handler instanceof DefaultResultSetHandler) {
+            return (MappedStatement) SystemMetaObject.forObject(handler).getValue("mappedStatement");
+        }
+        return null;
+    }
+
+    /**
+     * 本拦截器之前注册的插件已将 Handler 包装为 JDK 代理，沿 Plugin.target 取出原始对象
+     */
+    private static Object unwrapPlugins(Object target) {
+        while (Proxy.isProxyClass(target.getClass())) {
+            final InvocationHandler handler = Proxy.getInvocationHandler(target);
+            if (!(handler instanceof Plugin)) {
+                break;
+            }
+            target = SystemMetaObject.forObject(handler).getValue("target");
+        }
+        return target;
+    }
+
+    private StatementEntry entryFor(MappedStatement mappedStatement) {
+        final StatementEntry entry = statements.get(mappedStatement);
+        if (entry != null) {
+            return entry;
+        }
+        return statements.computeIfAbsent(mappedStatement, StatementEntry::new);
+    }
+
+    private StatementMetrics newMetrics(MappedStatement mappedStatement, Tags tags) {
+        StatementMetrics created = new StatementMetrics(mappedStatement, settings, registry, tags);
+        final ConfigurationMetrics configurationMetrics = configurationMetrics(mappedStatement.getConfiguration());
+        final AsyncRecorder recorder = configurationMetrics != null ? configurationMetrics.getRecorder() : null;
+        if (recorder != null) {
+            recorder.register(created);
+        }
+        return created;
+    }
+
+    /**
+     * @return the metrics of the configuration, or {@code null} if its meters could not be registered
+     */
+    private ConfigurationMetrics configurationMetrics(Configuration configuration) {
+        final ConfigurationMetrics metrics = configurations.get(configuration);
+        if (metrics != null || unavailableConfigurations.contains(configuration)) {
+            return metrics;
+        }
+        try {
+            return configurations.computeIfAbsent(configuration,
+                    c -> new ConfigurationMetrics(settings, registry, statementTags.tagsOf(c)));
+        } catch (RuntimeException e) {
+            //指标注册在执行语句的线程上进行，失败（如 Prometheus 拒绝标签不一致的同名指标）时不影响语句本身
+            if (unavailableConfigurations.add(configuration)) {
+                log.warn("MyBatis metrics of configuration {} can not be registered and are not recorded",
+                        statementTags.tagsOf(configuration), e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Install a {@link MetricsCache} on every statement of the configuration that uses a
+     * second-level cache, if {@code cacheMetrics} is on; statements sharing a cache share one
+     * decorator. Call it once the configuration is built and before any statement executes,
+     * since it replaces the cache of the {@code MappedStatement}s, and after the tags of the
+     * configuration are registered; {@link SqlSessionFactoryMetricsPostProcessor} does so for
+     * every {@code SqlSessionFactory} bean. The decorators count once {@link #bindTo} is called.
+     * @param configuration the configuration
+     */
+    public synchronized void instrumentCaches(Configuration configuration) {
+        if (!settings.isCacheMetrics() || !instrumentedConfigurations.add(configuration)) {
+            return;
+        }
+        final Runnable onHit = () -> executionContext.get().cacheHit = true;
+        final MeterRegistry current = registry;
+        for (String name : configuration.getMappedStatementNames()) {
+            //不含 . 的短名称可能对应多个语句（Ambiguity），只取完整 id
+            if (name.indexOf('.') < 0) {
+                continue;
+            }
+            MappedStatement mappedStatement = configuration.getMappedStatement(name, false);
+            Cache cache = mappedStatement.getCache();
+            if (cache == null || cache instanceof MetricsCache) {
+                continue;
+            }
+            MetricsCache decorated = decoratedCaches.computeIfAbsent(cache, c -> {
+                MetricsCache created = new MetricsCache(c, onHit, () -> filter.isEnabled(), statementTags.tagsOf(configuration));
+                if (current != null) {
+                    created.bindTo(current);
+                }
+                return created;
+            });
+            SystemMetaObject.forObject(mappedStatement).setValue("cache", decorated);
+        }
+    }
+
     @Override
     public Object plugin(Object target) {
-        if (target instanceof Executor || target instanceof StatementHandler) {
+        if (registry == null) {
+            return target;
+        }
+        if (target instanceof Executor) {
+            final ExecutorMetrics executorMetrics = new ExecutorMetrics(isBatch(target));
+            Object executor = Plugin.wrap(target, executorMetrics);
+            executorMetrics.proxy = (Executor) executor;
+            if (settings.isSessionTracking() && filter.isEnabled()) {
+                //每个执行器（SqlSession）一个跟踪器，状态不跨线程共享
+                executor = Plugin.wrap(executor, new SessionTracker(settings.getSessionRepeatThreshold(),
+                        this::sessionMetricsFor));
+            }
+            return executor;
+        }
+        if (!filter.isEnabled()) {
+            return target;
+        }
+        final boolean statementHandler = target instanceof StatementHandler;
+        final boolean phases = settings.isPhases() && (statementHandler || target instanceof ResultSetHandler);
+        if (!phases && !(statementHandler
+                && (settings.isCacheMetrics() || settings.isParameterShapes() || settings.isSessionTracking()))) {
+            return target;
+        }
+        final ExecutionContext context = executionContext.get();
+        MappedStatement mappedStatement = mappedStatementOf(target);
+        if (mappedStatement == null) {
+            //无法识别的 Handler 实现：视为当前语句所有，此时无法区分嵌套查询
+            mappedStatement = context.mappedStatement;
+        }
+        if (statementHandler) {
+            statementCreated((StatementHandler) target, mappedStatement);
+            if (mappedStatement != null && mappedStatement == context.mappedStatement) {
+                //创建 Handler 即将访问数据库，不依赖 Handler 是否被包装
+                context.prepared = true;
+            }
+        }
+        //结果映射中的嵌套查询直接调用执行器，不经过插件，其 Handler 属于另一语句，不计入当前语句的阶段
+        if (phases && mappedStatement != null && mappedStatement == context.mappedStatement) {
             return Plugin.wrap(target, this);
         }
         return target;
     }
 
+    /**
+     * 只有 BATCH 执行器（可能被 CachingExecutor 包装）在 flush 时执行语句
+     */
+    private static boolean isBatch(Object executor) {
+        if (executor instanceof CachingExecutor) {
+            executor = SystemMetaObject.forObject(executor).getValue("delegate");
+        }
+        return executor instanceof BatchExecutor;
+    }
+
+    @Override
+    public synchronized void setProperties(Properties properties) {
+        this.settings = StatementMetricsSettings.from(properties);
+        this.filter = StatementFilter.from(properties);
+        this.slowQueries = slowQueryBuffer(settings);
+        reset();
+    }
+
+    /**
+     * Register the meters with {@code registry} and record into it from now on. Until the
+     * first call the interceptor registers nothing and leaves executors unwrapped; statement
+     * meters are registered when a statement is first executed.
+     * @param registry the registry
+     */
     @Override
-    public void setProperties(Properties properties) {
+    public synchronized void bindTo(MeterRegistry registry) {
+        if (this.registry == registry) {
+            return;
+        }
+        reset();
+        //缓存装饰器在构建 Configuration 时已安装，只需重新绑定
+        for (MetricsCache cache : decoratedCaches.values()) {
+            cache.bindTo(registry);
+        }
+        this.registry = registry;
+    }
+
+    /**
+     * 丢弃已创建的指标，之后按当前设置与注册表重新创建；异步记录器停止前将剩余缓冲记录到原注册表
+     */
+    private void reset() {
+        for (ConfigurationMetrics metrics : configurations.values()) {
+            metrics.close();
+        }
+        configurations.clear();
+        statements.clear();
+        unavailableConfigurations.clear();
+    }
+
+    /**
+     * @return the metrics of the statements executed so far
+     */
+    public Collection<StatementMetrics> getStatementMetrics() {
+        for (ConfigurationMetrics configurationMetrics : configurations.values()) {
+            if (configurationMetrics.getRecorder() != null) {
+                configurationMetrics.getRecorder().flush();
+            }
+        }
+        final List<StatementMetrics> metrics = new ArrayList<>(statements.size());
+        for (StatementEntry entry : statements.values()) {
+            entry.collect(metrics);
+        }
+        return metrics;
+    }
+
+    public StatementTags getStatementTags() {
+        return statementTags;
+    }
+
+    /**
+     * @param statementTags the tags to share, e.g. those registered for every {@code SqlSessionFactory} bean
+     */
+    public void setStatementTags(StatementTags statementTags) {
+        this.statementTags = statementTags;
+    }
+
+    public StatementFilter getStatementFilter() {
+        return filter;
+    }
+
+    /**
+     * @param filter the filter to share, e.g. one configured from Spring properties
+     */
+    public void setStatementFilter(StatementFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @return the slow query buffer, or {@code null} if the capture is disabled
+     */
+    public SlowQueryBuffer getSlowQueries() {
+        return slowQueries;
+    }
+
+    private static SlowQueryBuffer slowQueryBuffer(StatementMetricsSettings settings) {
+        if (settings.getSlowQueries() <= 0) {
+            return null;
+        }
+        return new SlowQueryBuffer(settings.getSlowQueries(), settings.getSlowQueryWindowSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * The filter decision and the metrics of one statement, looked up once per call. The
+     * metrics are created when the statement is first measured; for a data source routed per
+     * call they are kept per routing key, which is read on every call.
+     */
+    private final class StatementEntry {
+
+        private final MappedStatement mappedStatement;
+        private final StatementFilter.Decision decision = new StatementFilter.Decision();
+        private final Tags tags;
+        /**
+         * 非路由数据源时为 null
+         */
+        private final Supplier<?> routingKey;
+        private volatile StatementMetrics metrics;
+        private final ConcurrentMap<Object, StatementMetrics> byKey = new ConcurrentHashMap<>();
+        /**
+         * 指标注册失败后置为 true，此后该语句不再统计
+         */
+        private volatile boolean unavailable;
+
+        StatementEntry(MappedStatement mappedStatement) {
+            final Configuration configuration = mappedStatement.getConfiguration();
+            this.mappedStatement = mappedStatement;
+            this.tags = statementTags.tagsOf(configuration);
+            this.routingKey = statementTags.routingKeyOf(configuration);
+        }
+
+        /**
+         * @return the metrics, or {@code null} if they could not be registered
+         */
+        StatementMetrics metrics() {
+            if (routingKey != null) {
+                return routed();
+            }
+            StatementMetrics current = metrics;
+            if (current == null) {
+                synchronized (this) {
+                    current = metrics;
+                    if (current == null && !unavailable) {
+                        current = register(() -> newMetrics(mappedStatement, tags));
+                        metrics = current;
+                    }
+                }
+            }
+            return current;
+        }
+
+        void collect(Collection<StatementMetrics> target) {
+            final StatementMetrics current = metrics;
+            if (current != null) {
+                target.add(current);
+            }
+            target.addAll(byKey.values());
+        }
+
+        private StatementMetrics routed() {
+            Object key = routingKey.get();
+            if (key == null) {
+                key = StatementTags.DEFAULT_ROUTE;
+            }
+            StatementMetrics routed = byKey.get(key);
+            if (routed == null && !unavailable) {
+                final Object routeKey = key;
+                routed = register(() -> byKey.computeIfAbsent(routeKey,
+                        k -> newMetrics(mappedStatement, StatementTags.withRoute(tags, k))));
+            }
+            return routed;
+        }
+
+        private StatementMetrics register(Supplier<StatementMetrics> factory) {
+            try {
+                return factory.get();
+            } catch (RuntimeException e) {
+                //与 configurationMetrics 相同：注册失败只放弃统计，不使语句执行失败
+                unavailable = true;
+                log.warn("MyBatis metrics of statement {} can not be registered and are not recorded", mappedStatement.getId(), e);
+                return null;
+            }
+        }
+
+    }
+
+    /**
+     * Intercepts the calls of one executor, i.e. one {@code SqlSession}. An executor only
+     * runs the statements of one configuration, whose meters are resolved on the first one.
+     * <p>
+     * {@code commit} flushes a {@code BATCH} executor internally, bypassing every plugin, so
+     * for those the batch is flushed through this plugin first, which times it and records
+     * the batch sizes; plugins wrapped around this one do not see that call.
+     */
+    @Intercepts(
+            {
+                    @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+                    @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+                    @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+                    @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class}),
+                    @Signature(type = Executor.class, method = "flushStatements", args = {}),
+                    @Signature(type = Executor.class, method = "commit", args = {boolean.class}),
+            }
+    )
+    private final class ExecutorMetrics implements Interceptor {
+
+        private final boolean batch;
+        /**
+         * 本插件包装后的执行器，commit 前经由它 flush
+         */
+        private Executor proxy;
+        /**
+         * 执行器只在一个线程中使用，无需同步
+         */
+        private ConfigurationMetrics configurationMetrics;
+
+        ExecutorMetrics(boolean batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            return interceptExecutor(invocation, this);
+        }
+
+        @Override
+        public Object plugin(Object target) {
+            return Plugin.wrap(target, this);
+        }
+
+        @Override
+        public void setProperties(Properties properties) {
+        }
+
+    }
+
+    private static class ExecutionContext {
+
+        private MappedStatement mappedStatement;
+        private StatementMetrics metrics;
+        /**
+         * 当前语句中已记录的结果映射耗时
+         */
+        private long resultsNanos;
+        /**
+         * 是否为当前语句创建过 StatementHandler、是否命中二级缓存
+         */
+        private boolean prepared;
+        private boolean cacheHit;
+
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+/**
+ * Binds the metrics interceptors registered in the {@link SqlSessionFactory} beans to the
+ * application {@link MeterRegistry} once all singletons exist, so that their meters are
+ * registered with, and collected by, the same registry as every other meter; until then the
+ * {@link MyBatisInterceptor} registers nothing. With several registries and no primary one,
+ * they are bound to {@link Metrics#globalRegistry}. The interceptors also get the shared
+ * {@link StatementFilter} configured from the Spring properties, which replaces the one read
+ * from their interceptor properties.
+ *
+ * @author DL.Wan
+ */
+public class MybatisInterceptorMetricsBinder implements SmartInitializingSingleton {
+
+	private final ObjectProvider<SqlSessionFactory> sqlSessionFactories;
+	private final ObjectProvider<MeterRegistry> registryProvider;
+	private final StatementFilter statementFilter;
+
+	public MybatisInterceptorMetricsBinder(ObjectProvider<SqlSessionFactory> sqlSessionFactories,
+			ObjectProvider<MeterRegistry> registryProvider, StatementFilter statementFilter) {
+		this.sqlSessionFactories = sqlSessionFactories;
+		this.registryProvider = registryProvider;
+		this.statementFilter = statementFilter;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		for (MyBatisInterceptor interceptor : SqlSessionFactories.interceptors(sqlSessionFactories, MyBatisInterceptor.class)) {
+			interceptor.setStatementFilter(statementFilter);
+		}
+		for (MybatisMetricsInterceptor interceptor : SqlSessionFactories.interceptors(sqlSessionFactories, MybatisMetricsInterceptor.class)) {
+			interceptor.setStatementFilter(statementFilter);
+		}
+		//多个注册表时绑定到全局注册表，Spring Boot 默认会将各注册表加入其中
+		MeterRegistry registry = registryProvider.getIfUnique(() -> Metrics.globalRegistry);
+		for (Interceptor interceptor : SqlSessionFactories.interceptors(sqlSessionFactories, Interceptor.class)) {
+			if (interceptor instanceof MyBatisInterceptor || interceptor instanceof MybatisMetricsInterceptor) {
+				((MeterBinder) interceptor).bindTo(registry);
+			}
+		}
+	}
+
+}
@@ -1,11 +1,21 @@
 package org.mybatis.metrics;
 
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.stat.JdbcConnectionStat;
+import com.alibaba.druid.stat.JdbcDataSourceStat;
+import com.alibaba.druid.stat.JdbcResultSetStat;
+import com.alibaba.druid.stat.JdbcStatementStat;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.binder.MeterBinder;
-import io.prometheus.client.Summary;
+import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.ToDoubleFunction;
 import java.util.function.ToLongFunction;
@@ -15,22 +25,75 @@ import java.util.function.ToLongFunction;
  *
  * @author L.cm
  */
-public class MybatisMetrics implements MeterBinder {
+@Slf4j
+public class MybatisMetrics implements MeterBinder, AutoCloseable {
 
-	private static final String[] labelNames = new String[] { "class", "command", "status" };
+	/**
+	 * MyBatis 拦截器指标，通过 Micrometer 记录，可使用 MeterFilter 过滤或配置百分位等
+	 */
+	public static final String MYBATIS_METRIC_NAME_PREFIX = "mybatis";
+
+	/**
+	 * MyBatisInterceptor：按语句（class）、命令类型（command）统计
+	 */
+	public static final String METRIC_NAME_REQUESTS = MYBATIS_METRIC_NAME_PREFIX + ".requests";
+	/**
+	 * 开启采样时 mybatis.requests 为 FunctionTimer，分桶与最大值另行导出
+	 */
+	public static final String METRIC_NAME_REQUESTS_BUCKETS = MYBATIS_METRIC_NAME_PREFIX + ".requests.buckets";
+	public static final String METRIC_NAME_REQUESTS_MAX = MYBATIS_METRIC_NAME_PREFIX + ".requests.max";
+	public static final String METRIC_NAME_PHASE = MYBATIS_METRIC_NAME_PREFIX + ".phase";
+	public static final String METRIC_NAME_RESULT_ROWS = MYBATIS_METRIC_NAME_PREFIX + ".result.rows";
+	public static final String METRIC_NAME_LARGE_RESULTS = MYBATIS_METRIC_NAME_PREFIX + ".large.results";
+	public static final String METRIC_NAME_LOCAL_CACHE_REQUESTS = MYBATIS_METRIC_NAME_PREFIX + ".local.cache.requests";
+	public static final String METRIC_NAME_BATCH_SIZE = MYBATIS_METRIC_NAME_PREFIX + ".batch.size";
+	public static final String METRIC_NAME_BATCH_UPDATED_ROWS = MYBATIS_METRIC_NAME_PREFIX + ".batch.updated.rows";
+	public static final String METRIC_NAME_FLUSH = MYBATIS_METRIC_NAME_PREFIX + ".flush";
+	public static final String METRIC_NAME_FLUSH_STATEMENTS = MYBATIS_METRIC_NAME_PREFIX + ".flush.statements";
+
+	/**
+	 * 二级缓存，按 namespace 统计
+	 */
+	public static final String METRIC_NAME_CACHE_REQUESTS = MYBATIS_METRIC_NAME_PREFIX + ".cache.requests";
+	public static final String METRIC_NAME_CACHE_PUTS = MYBATIS_METRIC_NAME_PREFIX + ".cache.puts";
+	public static final String METRIC_NAME_CACHE_INVALIDATIONS = MYBATIS_METRIC_NAME_PREFIX + ".cache.invalidations";
+	public static final String METRIC_NAME_CACHE_SIZE = MYBATIS_METRIC_NAME_PREFIX + ".cache.size";
 
-	public static final Counter QUERY_COUNT = Counter.builder()
-			.name("mybatis_requests_total").help("total sql command.")
-			.labelNames(labelNames).register();
+	/**
+	 * 每个事务（commit/rollback/close 之间）执行的语句数
+	 */
+	public static final String METRIC_NAME_SESSION_STATEMENTS = MYBATIS_METRIC_NAME_PREFIX + ".session.statements";
+	public static final String METRIC_NAME_SESSION_REPEATED_STATEMENTS = MYBATIS_METRIC_NAME_PREFIX + ".session.repeated.statements";
+
+	/**
+	 * 发往数据库的 SQL：绑定参数个数、SQL 长度及动态语句生成的不同 SQL 数
+	 */
+	public static final String METRIC_NAME_SQL_PARAMETERS = MYBATIS_METRIC_NAME_PREFIX + ".sql.parameters";
+	public static final String METRIC_NAME_SQL_LENGTH = MYBATIS_METRIC_NAME_PREFIX + ".sql.length";
+	public static final String METRIC_NAME_SQL_SHAPES = MYBATIS_METRIC_NAME_PREFIX + ".sql.shapes";
 
-	public static final Gauge QUERY_MAX = Gauge.builder()
-			.name("mybatis_requests_max")
-			.help("run sql command latency in seconds.")
-			.labelNames(labelNames).register();
+	/**
+	 * 异步记录模式：因线程缓冲区已满而丢弃的记录数、记录失败数、已缓冲尚未记录的数量
+	 */
+	public static final String METRIC_NAME_ASYNC_DROPPED = MYBATIS_METRIC_NAME_PREFIX + ".async.dropped";
+	public static final String METRIC_NAME_ASYNC_ERRORS = MYBATIS_METRIC_NAME_PREFIX + ".async.errors";
+	public static final String METRIC_NAME_ASYNC_PENDING = MYBATIS_METRIC_NAME_PREFIX + ".async.pending";
 
-	public static final Summary QUERY_SUMMARY = Summary.build()
-			.name("mybatis_latency_seconds").help("Request latency in seconds.").labelNames(labelNames)
-			.register();
+	/**
+	 * 游标查询：从执行到第一行、从执行到关闭的耗时，流式返回的行数，未读完即关闭的游标及当前打开的游标
+	 */
+	public static final String METRIC_NAME_CURSOR_FIRST_ROW = MYBATIS_METRIC_NAME_PREFIX + ".cursor.first.row";
+	public static final String METRIC_NAME_CURSOR_DURATION = MYBATIS_METRIC_NAME_PREFIX + ".cursor.duration";
+	public static final String METRIC_NAME_CURSOR_ROWS = MYBATIS_METRIC_NAME_PREFIX + ".cursor.rows";
+	public static final String METRIC_NAME_CURSOR_ABANDONED = MYBATIS_METRIC_NAME_PREFIX + ".cursor.abandoned";
+	public static final String METRIC_NAME_CURSOR_OPEN = MYBATIS_METRIC_NAME_PREFIX + ".cursor.open";
+
+	/**
+	 * MybatisMetricsInterceptor：按语句（operation）及 Mapper 资源（class）统计
+	 */
+	public static final String METRIC_NAME_INFLIGHT = MYBATIS_METRIC_NAME_PREFIX + ".inflight.requests";
+	public static final String METRIC_NAME_INFLIGHT_PEAK = MYBATIS_METRIC_NAME_PREFIX + ".inflight.requests.peak";
+	public static final String METRIC_NAME_ERRORS = MYBATIS_METRIC_NAME_PREFIX + ".errors";
 
 	/**
 	 * Prefix used for all Druid metric names.
@@ -140,15 +203,15 @@ public class MybatisMetrics implements MeterBinder {
 	 * Sql
 	 */
 	private static final String METRIC_NAME_SQL_SKIP_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.skip.count";
-	private static final String METRIC_NAME_SQL_EXECUTE_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.execute.count";
-	private static final String METRIC_NAME_SQL_EXECUTE_SUCCESS_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.execute.success.count";
-	private static final String METRIC_NAME_SQL_EXECUTE_ERROR_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.execute.error.count";
-	private static final String METRIC_NAME_SQL_EXECUTE_MILLIS_TOTAL = DRUID_METRIC_NAME_PREFIX + ".sql.execute.millis.total";
-	private static final String METRIC_NAME_SQL_EXECUTE_MILLIS_MAX = DRUID_METRIC_NAME_PREFIX + ".sql.execute.millis.max";
-	private static final String METRIC_NAME_SQL_EXECUTE_BATCH_SIZE_TOTAL = DRUID_METRIC_NAME_PREFIX + ".sql.execute.batch.size.total";
-	private static final String METRIC_NAME_SQL_EXECUTE_BATCH_SIZE_MAX = DRUID_METRIC_NAME_PREFIX + ".sql.execute.batch.size.max";
-	private static final String METRIC_NAME_SQL_IN_TRANSACTION_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.in.transaction.count";
-	private static final String METRIC_NAME_SQL_CONCURRENT_MAX = DRUID_METRIC_NAME_PREFIX + ".sql.concurrent.max";
+	static final String METRIC_NAME_SQL_EXECUTE_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.execute.count";
+	static final String METRIC_NAME_SQL_EXECUTE_SUCCESS_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.execute.success.count";
+	static final String METRIC_NAME_SQL_EXECUTE_ERROR_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.execute.error.count";
+	static final String METRIC_NAME_SQL_EXECUTE_MILLIS_TOTAL = DRUID_METRIC_NAME_PREFIX + ".sql.execute.millis.total";
+	static final String METRIC_NAME_SQL_EXECUTE_MILLIS_MAX = DRUID_METRIC_NAME_PREFIX + ".sql.execute.millis.max";
+	static final String METRIC_NAME_SQL_EXECUTE_BATCH_SIZE_TOTAL = DRUID_METRIC_NAME_PREFIX + ".sql.execute.batch.size.total";
+	static final String METRIC_NAME_SQL_EXECUTE_BATCH_SIZE_MAX = DRUID_METRIC_NAME_PREFIX + ".sql.execute.batch.size.max";
+	static final String METRIC_NAME_SQL_IN_TRANSACTION_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.in.transaction.count";
+	static final String METRIC_NAME_SQL_CONCURRENT_MAX = DRUID_METRIC_NAME_PREFIX + ".sql.concurrent.max";
 	private static final String METRIC_NAME_SQL_ERROR_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.error.count";
 
 	private static final String METRIC_NAME_SQL_SELECT_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.select.count";
@@ -157,9 +220,17 @@ public class MybatisMetrics implements MeterBinder {
 	private static final String METRIC_NAME_SQL_DELETE_COUNT = DRUID_METRIC_NAME_PREFIX + ".sql.delete.count";
 
 	private final Map<String, DruidDataSource> druidDataSourceMap;
+	private final MybatisMetricsProperties.Druid druidProperties;
+	private final List<DruidSqlMetrics> sqlMetrics = new CopyOnWriteArrayList<>();
+	private ScheduledExecutorService sqlRefresher;
 
 	public MybatisMetrics(Map<String, DruidDataSource> druidDataSourceMap) {
+		this(druidDataSourceMap, new MybatisMetricsProperties.Druid());
+	}
+
+	public MybatisMetrics(Map<String, DruidDataSource> druidDataSourceMap, MybatisMetricsProperties.Druid druidProperties) {
 		this.druidDataSourceMap = druidDataSourceMap;
+		this.druidProperties = druidProperties;
 	}
 
 	@Override
@@ -169,84 +240,89 @@ public class MybatisMetrics implements MeterBinder {
 			List<Tag> tags = new ArrayList<>(2);
 			tags.add(Tag.of(METRIC_CATEGORY, name));
 
-			bindDataSourceMetrics(meterRegistry, dataSource, tags);
-			bindDataSourceMetrics(meterRegistry, dataSource, tags);
+			// 同一数据源的所有连接池指标在一次抓取内共用一份快照
+			DruidPoolSnapshot snapshot = new DruidPoolSnapshot(druidProperties.getSnapshotTtl());
 
 			JdbcDataSourceStat dsStats = dataSource.getDataSourceStat();
 
-			bindConnectionMetrics(meterRegistry, dsStats.getConnectionStat(), tags);
+			bindDataSourceMetrics(meterRegistry, dataSource, snapshot, tags);
+			bindDataSourceMetrics(meterRegistry, dsStats, snapshot, tags);
+
+			bindConnectionMetrics(meterRegistry, dsStats.getConnectionStat(), snapshot, tags);
 
-			bindStatementMetrics(meterRegistry, dsStats.getStatementStat(), tags);
+			bindStatementMetrics(meterRegistry, dsStats.getStatementStat(), snapshot, tags);
 
-			bindResultSetMetrics(meterRegistry, dsStats.getResultSetStat(), tags);
+			bindResultSetMetrics(meterRegistry, dsStats.getResultSetStat(), snapshot, tags);
 
 			bindSqlMetrics(meterRegistry, dsStats , tags);
 
 
 		});
+		scheduleSqlRefresh();
 	}
 
 	/**
 	 * bind druid datasource metrics
 	 * @param meterRegistry meter registry
 	 * @param dataSource druid datasource
+	 * @param snapshot the pool snapshot the gauges read from
 	 * @param tags tags
 	 */
-	private void bindDataSourceMetrics(MeterRegistry meterRegistry, DruidDataSource dataSource, List<Tag> tags) {
+	private void bindDataSourceMetrics(MeterRegistry meterRegistry, DruidDataSource dataSource, DruidPoolSnapshot snapshot, List<Tag> tags) {
 
 		// basic configurations
-		bindGauge(meterRegistry, METRIC_NAME_INITIAL_SIZE, "Initial size", dataSource, DruidDataSource::getInitialSize, tags);
-		bindGauge(meterRegistry, METRIC_NAME_MIN_IDLE, "Min idle", dataSource, DruidDataSource::getMinIdle, tags);
-		bindGauge(meterRegistry, METRIC_NAME_MAX_ACTIVE, "Max active", dataSource, DruidDataSource::getMaxActive, tags);
-		bindGauge(meterRegistry, METRIC_NAME_MAX_WAIT, "Max wait", dataSource, DruidDataSource::getMaxWait, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_INITIAL_SIZE, "Initial size", dataSource, DruidDataSource::getInitialSize, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_MIN_IDLE, "Min idle", dataSource, DruidDataSource::getMinIdle, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_MAX_ACTIVE, "Max active", dataSource, DruidDataSource::getMaxActive, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_MAX_WAIT, "Max wait", dataSource, DruidDataSource::getMaxWait, tags);
 
 		// connection pool core metrics
-		bindGauge(meterRegistry, METRIC_NAME_ACTIVE_COUNT, "Active count", dataSource, DruidDataSource::getActiveCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_ACTIVE_PEAK, "Active peak", dataSource, DruidDataSource::getActivePeak, tags);
-		bindGauge(meterRegistry, METRIC_NAME_POOLING_COUNT, "Pooling count", dataSource, DruidDataSource::getPoolingCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_POOLING_PEAK, "Pooling peak", dataSource, DruidDataSource::getPoolingPeak, tags);
-		bindGauge(meterRegistry, METRIC_NAME_WAIT_THREAD_COUNT, "Wait thread count", dataSource, DruidDataSource::getWaitThreadCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_ACTIVE_COUNT, "Active count", dataSource, DruidDataSource::getActiveCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_ACTIVE_PEAK, "Active peak", dataSource, DruidDataSource::getActivePeak, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_POOLING_COUNT, "Pooling count", dataSource, DruidDataSource::getPoolingCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_POOLING_PEAK, "Pooling peak", dataSource, DruidDataSource::getPoolingPeak, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_WAIT_THREAD_COUNT, "Wait thread count", dataSource, DruidDataSource::getWaitThreadCount, tags);
 
 		// connection pool detail metrics
-		bindGauge(meterRegistry, METRIC_NAME_NOT_EMPTY_WAIT_COUNT, "Not empty wait count", dataSource, DruidDataSource::getNotEmptyWaitCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_NOT_EMPTY_WAIT_MILLIS, "Not empty wait millis", dataSource, DruidDataSource::getNotEmptyWaitMillis, tags);
-		bindGauge(meterRegistry, METRIC_NAME_NOT_EMPTY_THREAD_COUNT, "Not empty thread count", dataSource, DruidDataSource::getNotEmptyWaitThreadCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_LOGIC_CONNECT_COUNT, "Logic connect count", dataSource, DruidDataSource::getConnectCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_LOGIC_CLOSE_COUNT, "Logic close count", dataSource, DruidDataSource::getCloseCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_LOGIC_CONNECT_ERROR_COUNT, "Logic connect error count", dataSource, DruidDataSource::getConnectErrorCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_PHYSICAL_CONNECT_COUNT, "Physical connect count", dataSource, DruidDataSource::getCreateCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_PHYSICAL_CLOSE_COUNT, "Physical close count", dataSource, DruidDataSource::getDestroyCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_PHYSICAL_CONNECT_ERROR_COUNT, "Physical connect error count", dataSource, DruidDataSource::getCreateErrorCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_NOT_EMPTY_WAIT_COUNT, "Not empty wait count", dataSource, DruidDataSource::getNotEmptyWaitCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_NOT_EMPTY_WAIT_MILLIS, "Not empty wait millis", dataSource, DruidDataSource::getNotEmptyWaitMillis, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_NOT_EMPTY_THREAD_COUNT, "Not empty thread count", dataSource, DruidDataSource::getNotEmptyWaitThreadCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_LOGIC_CONNECT_COUNT, "Logic connect count", dataSource, DruidDataSource::getConnectCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_LOGIC_CLOSE_COUNT, "Logic close count", dataSource, DruidDataSource::getCloseCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_LOGIC_CONNECT_ERROR_COUNT, "Logic connect error count", dataSource, DruidDataSource::getConnectErrorCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_PHYSICAL_CONNECT_COUNT, "Physical connect count", dataSource, DruidDataSource::getCreateCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_PHYSICAL_CLOSE_COUNT, "Physical close count", dataSource, DruidDataSource::getDestroyCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_PHYSICAL_CONNECT_ERROR_COUNT, "Physical connect error count", dataSource, DruidDataSource::getCreateErrorCount, tags);
 
 		// sql execution core metrics
-		bindGauge(meterRegistry, METRIC_NAME_EXECUTE_COUNT, "Execute count", dataSource, DruidDataSource::getExecuteCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_ERROR_COUNT, "Error count", dataSource, DruidDataSource::getErrorCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_EXECUTE_COUNT, "Execute count", dataSource, DruidDataSource::getExecuteCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_ERROR_COUNT, "Error count", dataSource, DruidDataSource::getErrorCount, tags);
 
 		// transaction metrics
-		bindGauge(meterRegistry, METRIC_NAME_START_TRANSACTION_COUNT, "Start transaction count", dataSource, DruidDataSource::getStartTransactionCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_COMMIT_COUNT, "Commit count", dataSource, DruidDataSource::getCommitCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_ROLLBACK_COUNT, "Rollback count", dataSource, DruidDataSource::getRollbackCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_START_TRANSACTION_COUNT, "Start transaction count", dataSource, DruidDataSource::getStartTransactionCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_COMMIT_COUNT, "Commit count", dataSource, DruidDataSource::getCommitCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_ROLLBACK_COUNT, "Rollback count", dataSource, DruidDataSource::getRollbackCount, tags);
 
 		// sql execution detail
-		bindGauge(meterRegistry, METRIC_NAME_PREPARED_STATEMENT_OPEN_COUNT, "Prepared statement open count", dataSource, DruidDataSource::getPreparedStatementCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_PREPARED_STATEMENT_CLOSED_COUNT, "Prepared statement closed count", dataSource, DruidDataSource::getClosedPreparedStatementCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_PSCACHE_ACCESS_COUNT, "PS cache access count", dataSource, DruidDataSource::getCachedPreparedStatementAccessCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_PSCACHE_HIT_COUNT, "PS cache hit count", dataSource, DruidDataSource::getCachedPreparedStatementHitCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_PSCACHE_MISS_COUNT, "PS cache miss count", dataSource, DruidDataSource::getCachedPreparedStatementMissCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_EXECUTE_QUERY_COUNT, "Execute query count", dataSource, DruidDataSource::getExecuteQueryCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_EXECUTE_UPDATE_COUNT, "Execute update count", dataSource, DruidDataSource::getExecuteUpdateCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_EXECUTE_BATCH_COUNT, "Execute batch count", dataSource, DruidDataSource::getExecuteBatchCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_PREPARED_STATEMENT_OPEN_COUNT, "Prepared statement open count", dataSource, DruidDataSource::getPreparedStatementCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_PREPARED_STATEMENT_CLOSED_COUNT, "Prepared statement closed count", dataSource, DruidDataSource::getClosedPreparedStatementCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_PSCACHE_ACCESS_COUNT, "PS cache access count", dataSource, DruidDataSource::getCachedPreparedStatementAccessCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_PSCACHE_HIT_COUNT, "PS cache hit count", dataSource, DruidDataSource::getCachedPreparedStatementHitCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_PSCACHE_MISS_COUNT, "PS cache miss count", dataSource, DruidDataSource::getCachedPreparedStatementMissCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_EXECUTE_QUERY_COUNT, "Execute query count", dataSource, DruidDataSource::getExecuteQueryCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_EXECUTE_UPDATE_COUNT, "Execute update count", dataSource, DruidDataSource::getExecuteUpdateCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_EXECUTE_BATCH_COUNT, "Execute batch count", dataSource, DruidDataSource::getExecuteBatchCount, tags);
 
 		// none core metrics, some are static configurations
-		bindGauge(meterRegistry, METRIC_NAME_MAX_WAIT, "Max wait", dataSource, DruidDataSource::getMaxWait, tags);
-		bindGauge(meterRegistry, METRIC_NAME_MAX_WAIT_THREAD_COUNT, "Max wait thread count", dataSource, DruidDataSource::getMaxWaitThreadCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_LOGIN_TIMEOUT, "Login timeout", dataSource, DruidDataSource::getLoginTimeout, tags);
-		bindGauge(meterRegistry, METRIC_NAME_QUERY_TIMEOUT, "Query timeout", dataSource, DruidDataSource::getQueryTimeout, tags);
-		bindGauge(meterRegistry, METRIC_NAME_TRANSACTION_QUERY_TIMEOUT, "Transaction query timeout", dataSource, DruidDataSource::getTransactionQueryTimeout, tags);
-		bindGauge(meterRegistry, METRIC_NAME_TRANSACTION_THRESHOLD_MILLIS, "Transaction threshold millis", dataSource, DruidDataSource::getTransactionThresholdMillis, tags);
-		bindGauge(meterRegistry, METRIC_NAME_VALIDATION_QUERY_TIMEOUT, "Validation query timeout", dataSource, DruidDataSource::getValidationQueryTimeout, tags);
-		bindGauge(meterRegistry, METRIC_NAME_MAX_POOL_PREPARED_STATEMENT_PER_CONNECTION_SIZE, "Max pool prepared statement per connection size", dataSource, DruidDataSource::getMaxPoolPreparedStatementPerConnectionSize, tags);
-		bindGauge(meterRegistry, METRIC_NAME_MAX_OPEN_PREPARED_STATEMENTS, "Max open prepared statements", dataSource, DruidDataSource::getMaxOpenPreparedStatements, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_MAX_WAIT, "Max wait", dataSource, DruidDataSource::getMaxWait, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_MAX_WAIT_THREAD_COUNT, "Max wait thread count", dataSource, DruidDataSource::getMaxWaitThreadCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_LOGIN_TIMEOUT, "Login timeout", dataSource, DruidDataSource::getLoginTimeout, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_QUERY_TIMEOUT, "Query timeout", dataSource, DruidDataSource::getQueryTimeout, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_TRANSACTION_QUERY_TIMEOUT, "Transaction query timeout", dataSource, DruidDataSource::getTransactionQueryTimeout, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_TRANSACTION_THRESHOLD_MILLIS, "Transaction threshold millis", dataSource, DruidDataSource::getTransactionThresholdMillis, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_VALIDATION_QUERY_TIMEOUT, "Validation query timeout", dataSource, DruidDataSource::getValidationQueryTimeout, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_MAX_POOL_PREPARED_STATEMENT_PER_CONNECTION_SIZE, "Max pool prepared statement per connection size", dataSource, DruidDataSource::getMaxPoolPreparedStatementPerConnectionSize, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_MAX_OPEN_PREPARED_STATEMENTS, "Max open prepared statements", dataSource, DruidDataSource::getMaxOpenPreparedStatements, tags);
 
 	}
 
@@ -255,14 +331,15 @@ public class MybatisMetrics implements MeterBinder {
 	 * Bind a {@link TimeGauge} to the given {@link JdbcDataSourceStat}.
 	 * @param meterRegistry the meter registry
 	 * @param dsStats the data source stats
+	 * @param snapshot the pool snapshot the gauges read from
 	 * @param tags the tags to use
 	 */
-	private void bindDataSourceMetrics(MeterRegistry meterRegistry, JdbcDataSourceStat dsStats, List<Tag> tags) {
+	private void bindDataSourceMetrics(MeterRegistry meterRegistry, JdbcDataSourceStat dsStats, DruidPoolSnapshot snapshot, List<Tag> tags) {
 
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTION_ACTIVE_COUNT, "Connection Active Count", dsStats, JdbcDataSourceStat::getConnectionActiveCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTION_CONNECT_ALIVE_MILLIS, "Connection Connect Alive Millis", dsStats, JdbcDataSourceStat::getConnectionConnectAliveMillis, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTION_CONNECT_ALIVE_MILLIS_MIN, "Connection Connect Alive Millis Min", dsStats, JdbcDataSourceStat::getConnectionConnectAliveMillisMin, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTION_CONNECT_ALIVE_MILLIS_MAX, "Connection Connect Alive Millis Max", dsStats, JdbcDataSourceStat::getConnectionConnectAliveMillisMax, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTION_ACTIVE_COUNT, "Connection Active Count", dsStats, JdbcDataSourceStat::getConnectionActiveCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTION_CONNECT_ALIVE_MILLIS, "Connection Connect Alive Millis", dsStats, JdbcDataSourceStat::getConnectionConnectAliveMillis, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTION_CONNECT_ALIVE_MILLIS_MIN, "Connection Connect Alive Millis Min", dsStats, JdbcDataSourceStat::getConnectionConnectAliveMillisMin, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTION_CONNECT_ALIVE_MILLIS_MAX, "Connection Connect Alive Millis Max", dsStats, JdbcDataSourceStat::getConnectionConnectAliveMillisMax, tags);
 
 	}
 
@@ -270,70 +347,90 @@ public class MybatisMetrics implements MeterBinder {
 	 * Bind a {@link TimeGauge} to the given {@link JdbcDataSourceStat}.
 	 * @param meterRegistry the meter registry
 	 * @param connectionStat the connection stat
+	 * @param snapshot the pool snapshot the gauges read from
 	 * @param tags the tags to apply to the gauge
 	 */
-	private void bindConnectionMetrics(MeterRegistry meterRegistry, JdbcConnectionStat connectionStat, List<Tag> tags) {
-
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTION_CONNECT_ALIVE_MILLIS_MAX, "Connection connect max time", connectionStat, JdbcConnectionStat::getConnectMillisMax, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTORS_ALIVE_MAX_TIME, "Connection alive max time", connectionStat, JdbcConnectionStat::getAliveMillisMax, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTORS_ALIVE_MIN_TIME, "Connection alive min time", connectionStat, JdbcConnectionStat::getAliveMillisMin, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTORS_ACTIVE_COUNT, "Connection active count", connectionStat, JdbcConnectionStat::getActiveCount, tags);
-  		bindGauge(meterRegistry, METRIC_NAME_CONNECTORS_CONNECT_COUNT, "Connection connect count", connectionStat, JdbcConnectionStat::getConnectCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTORS_CLOSE_COUNT, "Connection close count", connectionStat, JdbcConnectionStat::getCloseCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTORS_ERROR_COUNT, "Connection error count", connectionStat, JdbcConnectionStat::getErrorCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTORS_CONNECT_ERROR_COUNT, "Connection connect error count", connectionStat, JdbcConnectionStat::getConnectErrorCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTORS_COMMIT_COUNT, "Connection commit count", connectionStat, JdbcConnectionStat::getCommitCount, tags);
-		bindGauge(meterRegistry, METRIC_NAME_CONNECTORS_ROLLBACK_COUNT, "Connection rollback count", connectionStat, JdbcConnectionStat::getRollbackCount, tags);
+	private void bindConnectionMetrics(MeterRegistry meterRegistry, JdbcConnectionStat connectionStat, DruidPoolSnapshot snapshot, List<Tag> tags) {
+
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTION_CONNECT_ALIVE_MILLIS_MAX, "Connection connect max time", connectionStat, JdbcConnectionStat::getConnectMillisMax, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTORS_ALIVE_MAX_TIME, "Connection alive max time", connectionStat, JdbcConnectionStat::getAliveMillisMax, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTORS_ALIVE_MIN_TIME, "Connection alive min time", connectionStat, JdbcConnectionStat::getAliveMillisMin, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTORS_ACTIVE_COUNT, "Connection active count", connectionStat, JdbcConnectionStat::getActiveCount, tags);
+  		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTORS_CONNECT_COUNT, "Connection connect count", connectionStat, JdbcConnectionStat::getConnectCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTORS_CLOSE_COUNT, "Connection close count", connectionStat, JdbcConnectionStat::getCloseCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTORS_ERROR_COUNT, "Connection error count", connectionStat, JdbcConnectionStat::getErrorCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTORS_CONNECT_ERROR_COUNT, "Connection connect error count", connectionStat, JdbcConnectionStat::getConnectErrorCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTORS_COMMIT_COUNT, "Connection commit count", connectionStat, JdbcConnectionStat::getCommitCount, tags);
+		bindGauge(meterRegistry, snapshot, METRIC_NAME_CONNECTORS_ROLLBACK_COUNT, "Connection rollback count", connectionStat, JdbcConnectionStat::getRollbackCount, tags);
 
 	}
 
-	private void bindStatementMetrics(MeterRegistry registry, JdbcStatementStat statementStat, List<Tag> tags) {
-
-		bindGauge(registry, METRIC_NAME_STATEMENT_CREATE_COUNT, "Jdbc Statement Create count", statementStat, JdbcStatementStat::getCreateCount, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_RUNNING_COUNT, "Jdbc Statement Running count", statementStat, JdbcStatementStat::getRunningCount, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_ERROR_COUNT, "Jdbc Statement Execute error count", statementStat, JdbcStatementStat::getErrorCount, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_CONCURRENT_MAX, "Jdbc Statement Concurrent max", statementStat, JdbcStatementStat::getConcurrentMax, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_CLOSE_COUNT, "Jdbc Statement Close count", statementStat, JdbcStatementStat::getCloseCount, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_NANO_TOTAL, "Jdbc Statement Nano count", statementStat, JdbcStatementStat::getNanoTotal, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_EXECUTE_COUNT, "Jdbc Statement Execute count", statementStat, JdbcStatementStat::getExecuteCount, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_EXECUTE_SUCCESS_COUNT, "Jdbc Statement Execute success count", statementStat, JdbcStatementStat::getExecuteSuccessCount, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_EXECUTE_MILLIS_TOTAL, "Jdbc Statement Execute millis total", statementStat, JdbcStatementStat::getExecuteMillisTotal, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_PREPARE_COUNT, "Jdbc Statement Prepare count", statementStat, JdbcStatementStat::getPrepareCount, tags);
-		bindGauge(registry, METRIC_NAME_STATEMENT_PREPARE_CALL_COUNT, "Jdbc Statement Prepare call count", statementStat, JdbcStatementStat::getPrepareCallCount, tags);
+	private void bindStatementMetrics(MeterRegistry registry, JdbcStatementStat statementStat, DruidPoolSnapshot snapshot, List<Tag> tags) {
+
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_CREATE_COUNT, "Jdbc Statement Create count", statementStat, JdbcStatementStat::getCreateCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_RUNNING_COUNT, "Jdbc Statement Running count", statementStat, JdbcStatementStat::getRunningCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_ERROR_COUNT, "Jdbc Statement Execute error count", statementStat, JdbcStatementStat::getErrorCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_CONCURRENT_MAX, "Jdbc Statement Concurrent max", statementStat, JdbcStatementStat::getConcurrentMax, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_CLOSE_COUNT, "Jdbc Statement Close count", statementStat, JdbcStatementStat::getCloseCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_NANO_TOTAL, "Jdbc Statement Nano count", statementStat, JdbcStatementStat::getNanoTotal, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_EXECUTE_COUNT, "Jdbc Statement Execute count", statementStat, JdbcStatementStat::getExecuteCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_EXECUTE_SUCCESS_COUNT, "Jdbc Statement Execute success count", statementStat, JdbcStatementStat::getExecuteSuccessCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_EXECUTE_MILLIS_TOTAL, "Jdbc Statement Execute millis total", statementStat, JdbcStatementStat::getExecuteMillisTotal, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_PREPARE_COUNT, "Jdbc Statement Prepare count", statementStat, JdbcStatementStat::getPrepareCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_STATEMENT_PREPARE_CALL_COUNT, "Jdbc Statement Prepare call count", statementStat, JdbcStatementStat::getPrepareCallCount, tags);
 	}
 
-	private void bindResultSetMetrics(MeterRegistry registry, JdbcResultSetStat resultSetStat, List<Tag> tags) {
+	private void bindResultSetMetrics(MeterRegistry registry, JdbcResultSetStat resultSetStat, DruidPoolSnapshot snapshot, List<Tag> tags) {
 
-		bindGauge(registry, METRIC_NAME_RESULTSET_OPENING_COUNT, "Jdbc ResultSet Opening count", resultSetStat, JdbcResultSetStat::getOpeningCount, tags);
-		bindGauge(registry, METRIC_NAME_RESULTSET_OPENING_MAX, "Jdbc ResultSet Opening max", resultSetStat, JdbcResultSetStat::getOpeningMax, tags);
-		bindGauge(registry, METRIC_NAME_RESULTSET_OPEN_COUNT, "Jdbc ResultSet Open count", resultSetStat, JdbcResultSetStat::getOpenCount, tags);
-		bindGauge(registry, METRIC_NAME_RESULTSET_CLOSE_COUNT, "Jdbc ResultSet Close count", resultSetStat, JdbcResultSetStat::getCloseCount, tags);
-		bindGauge(registry, METRIC_NAME_RESULTSET_ERROR_COUNT, "Jdbc ResultSet Error count", resultSetStat, JdbcResultSetStat::getErrorCount, tags);
-		bindGauge(registry, METRIC_NAME_RESULTSET_FETCH_ROW_COUNT, "Jdbc ResultSet Fetch row count", resultSetStat, JdbcResultSetStat::getFetchRowCount, tags);
-		bindGauge(registry, METRIC_NAME_RESULTSET_FETCH_ROW_COUNT, "Jdbc ResultSet Alive Nano Total", resultSetStat, JdbcResultSetStat::getAliveNanoTotal, tags);
-		bindGauge(registry, METRIC_NAME_RESULTSET_FETCH_ROW_COUNT, "Jdbc ResultSet Alive Millis Total", resultSetStat, JdbcResultSetStat::getAliveMillisTotal, tags);
-		bindGauge(registry, METRIC_NAME_RESULTSET_ERROR_COUNT, "Jdbc ResultSet Alive Milis Max", resultSetStat, JdbcResultSetStat::getAliveMilisMax, tags);
-		bindGauge(registry, METRIC_NAME_RESULTSET_FETCH_ROW_COUNT, "Jdbc ResultSet Alive Milis Min", resultSetStat, JdbcResultSetStat::getAliveMilisMin, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_OPENING_COUNT, "Jdbc ResultSet Opening count", resultSetStat, JdbcResultSetStat::getOpeningCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_OPENING_MAX, "Jdbc ResultSet Opening max", resultSetStat, JdbcResultSetStat::getOpeningMax, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_OPEN_COUNT, "Jdbc ResultSet Open count", resultSetStat, JdbcResultSetStat::getOpenCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_CLOSE_COUNT, "Jdbc ResultSet Close count", resultSetStat, JdbcResultSetStat::getCloseCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_ERROR_COUNT, "Jdbc ResultSet Error count", resultSetStat, JdbcResultSetStat::getErrorCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_FETCH_ROW_COUNT, "Jdbc ResultSet Fetch row count", resultSetStat, JdbcResultSetStat::getFetchRowCount, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_FETCH_ROW_COUNT, "Jdbc ResultSet Alive Nano Total", resultSetStat, JdbcResultSetStat::getAliveNanoTotal, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_FETCH_ROW_COUNT, "Jdbc ResultSet Alive Millis Total", resultSetStat, JdbcResultSetStat::getAliveMillisTotal, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_ERROR_COUNT, "Jdbc ResultSet Alive Milis Max", resultSetStat, JdbcResultSetStat::getAliveMilisMax, tags);
+		bindGauge(registry, snapshot, METRIC_NAME_RESULTSET_FETCH_ROW_COUNT, "Jdbc ResultSet Alive Milis Min", resultSetStat, JdbcResultSetStat::getAliveMilisMin, tags);
 
 	}
 
 	private void bindSqlMetrics(MeterRegistry registry, JdbcDataSourceStat dsStats, List<Tag> tags) {
 
 		bindGauge(registry, METRIC_NAME_SQL_SKIP_COUNT, "Skip Sql Count", dsStats, JdbcDataSourceStat::getSkipSqlCount, tags);
-		dsStats.getSqlStatMap().forEach((sql, sqlStat) -> {
-			List<Tag> sqlTags = new ArrayList<>(tags);
-			sqlTags.add(Tag.of("sql", sql));
-			bindGauge(registry, METRIC_NAME_SQL_EXECUTE_COUNT, "Jdbc Sql Execute count", sqlStat, JdbcSqlStat::getExecuteCount, sqlTags);
-			bindGauge(registry, METRIC_NAME_SQL_EXECUTE_SUCCESS_COUNT, "Jdbc Sql Execute success count", sqlStat, JdbcSqlStat::getExecuteSuccessCount, sqlTags);
-			bindGauge(registry, METRIC_NAME_SQL_EXECUTE_ERROR_COUNT, "Jdbc Sql Execute error count", sqlStat, JdbcSqlStat::getErrorCount, sqlTags);
-			bindGauge(registry, METRIC_NAME_SQL_EXECUTE_MILLIS_TOTAL, "Jdbc Sql Execute millis total", sqlStat, JdbcSqlStat::getExecuteMillisTotal, sqlTags);
-			bindGauge(registry, METRIC_NAME_SQL_EXECUTE_MILLIS_MAX, "Jdbc Sql Execute millis max", sqlStat, JdbcSqlStat::getExecuteMillisMax, sqlTags);
-			bindGauge(registry, METRIC_NAME_SQL_EXECUTE_BATCH_SIZE_TOTAL, "Jdbc Sql Execute Batch Size Total", sqlStat, JdbcSqlStat::getExecuteBatchSizeTotal, sqlTags);
-			bindGauge(registry, METRIC_NAME_SQL_EXECUTE_BATCH_SIZE_MAX, "Jdbc Sql Execute Batch Size Max", sqlStat, JdbcSqlStat::getExecuteBatchSizeMax, sqlTags);
-			bindGauge(registry, METRIC_NAME_SQL_IN_TRANSACTION_COUNT, "Jdbc Sql In transaction count", sqlStat, JdbcSqlStat::getInTransactionCount, sqlTags);
-			bindGauge(registry, METRIC_NAME_SQL_CONCURRENT_MAX, "Jdbc Sql Concurrent max", sqlStat, JdbcSqlStat::getConcurrentMax, sqlTags);
+		DruidSqlMetrics metrics = new DruidSqlMetrics(registry, dsStats, tags, druidProperties.getSqlTopK(), druidProperties.getSqlRankBy());
+		metrics.bind();
+		sqlMetrics.add(metrics);
+
+	}
+
+	/**
+	 * 定期发现启动后新出现的 SQL，并移除已被 Druid 淘汰或重置的 SQL 的指标
+	 */
+	private void scheduleSqlRefresh() {
+		Duration interval = druidProperties.getSqlRefreshInterval();
+		if (interval == null || interval.isZero() || interval.isNegative() || sqlMetrics.isEmpty() || sqlRefresher != null) {
+			return;
+		}
+		sqlRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "mybatis-metrics-druid-sql-refresher");
+			thread.setDaemon(true);
+			return thread;
 		});
+		sqlRefresher.scheduleWithFixedDelay(() -> sqlMetrics.forEach(metrics -> {
+			try {
+				metrics.refresh();
+			} catch (RuntimeException e) {
+				log.warn("Refresh druid sql metrics failed", e);
+			}
+		}), interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
 
+	@Override
+	public void close() {
+		if (sqlRefresher != null) {
+			sqlRefresher.shutdownNow();
+		}
 	}
 
 	private <T> void bindGauge(MeterRegistry registry, String metric, String help, T measureObj, ToDoubleFunction<T> measure, Iterable<Tag> tags) {
@@ -343,6 +440,22 @@ public class MybatisMetrics implements MeterBinder {
 				.register(registry);
 	}
 
+	/**
+	 * Bind a gauge that reads {@code measure} from the pool snapshot instead of calling it at scrape time.
+	 */
+	private <T> void bindGauge(MeterRegistry registry, DruidPoolSnapshot snapshot, String metric, String help, T measureObj,
+							   ToDoubleFunction<T> measure, Iterable<Tag> tags) {
+		if (registry.find(metric).tags(tags).gauge() != null) {
+			return;
+		}
+		final int index = snapshot.add(measureObj, measure);
+		Gauge.builder(metric, snapshot, s -> s.get(index))
+				.description(help)
+				.tags(tags)
+				.strongReference(true)
+				.register(registry);
+	}
+
 	private <T> void bindTimeGauge(MeterRegistry registry, String metric, String help, T metricResult,
 								   ToDoubleFunction<T> measure, Iterable<Tag> tags) {
 		TimeGauge.builder(metric, metricResult, TimeUnit.SECONDS, measure)
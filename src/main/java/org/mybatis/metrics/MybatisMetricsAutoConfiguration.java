@@ -1,20 +1,29 @@
 package org.mybatis.metrics;
 
+import com.alibaba.druid.pool.DruidDataSource;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
 import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
 import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 import javax.sql.DataSource;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Properties;
 
 /**
  * @author DL.Wan
@@ -23,12 +32,104 @@ import java.util.Map;
 @AutoConfigureAfter({ MetricsAutoConfiguration.class, DataSourceAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class })
 @ConditionalOnClass({ SqlSessionFactory.class, MeterRegistry.class })
 @ConditionalOnBean({ DataSource.class, MeterRegistry.class })
+@EnableConfigurationProperties(MybatisMetricsProperties.class)
 public class MybatisMetricsAutoConfiguration {
 
+	/**
+	 * static：BeanPostProcessor 需在普通 Bean 之前创建，配置直接从 Environment 绑定
+	 */
 	@Bean
-	public MybatisMetrics druidMetrics(ObjectProvider<Map<String, DataSource>> dataSourcesProvider) {
-		Map<String, DataSource> dataSourceMap = dataSourcesProvider.getIfAvailable(HashMap::new);
-		return new MybatisMetrics(druidDataSourceMap);
+	@ConditionalOnProperty(prefix = MybatisMetricsProperties.PREFIX + ".datasource", name = "enabled", havingValue = "true")
+	public static DataSourceMetricsPostProcessor dataSourceMetricsPostProcessor(ObjectProvider<MeterRegistry> registryProvider,
+			Environment environment) {
+		MybatisMetricsProperties.Datasource datasource = Binder.get(environment)
+				.bind(MybatisMetricsProperties.PREFIX + ".datasource", MybatisMetricsProperties.Datasource.class)
+				.orElseGet(MybatisMetricsProperties.Datasource::new);
+		return new DataSourceMetricsPostProcessor(registryProvider, datasource.getSlo(), new HashSet<>(datasource.getExcludes()));
+	}
+
+	/**
+	 * static：需在 SqlSessionFactory 创建前注册，拦截器按需从容器获取
+	 */
+	@Bean
+	public static SqlSessionFactoryMetricsPostProcessor sqlSessionFactoryMetricsPostProcessor(
+			ObjectProvider<MyBatisInterceptor> myBatisInterceptor, ObjectProvider<MybatisMetricsInterceptor> mybatisMetricsInterceptor,
+			ObjectProvider<RoutingKeyResolver> routingKeyResolver) {
+		return new SqlSessionFactoryMetricsPostProcessor(myBatisInterceptor, mybatisMetricsInterceptor, routingKeyResolver);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = MybatisMetricsProperties.PREFIX, name = "register-interceptors", havingValue = "true", matchIfMissing = true)
+	public MyBatisInterceptor myBatisInterceptor(MybatisMetricsProperties properties) {
+		MyBatisInterceptor interceptor = new MyBatisInterceptor();
+		interceptor.setProperties(interceptorProperties(properties));
+		return interceptor;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = MybatisMetricsProperties.PREFIX, name = "register-interceptors", havingValue = "true", matchIfMissing = true)
+	public MybatisMetricsInterceptor mybatisMetricsInterceptor(MybatisMetricsProperties properties) {
+		MybatisMetricsInterceptor interceptor = new MybatisMetricsInterceptor();
+		interceptor.setProperties(interceptorProperties(properties));
+		return interceptor;
+	}
+
+	private static Properties interceptorProperties(MybatisMetricsProperties properties) {
+		Properties interceptorProperties = new Properties();
+		interceptorProperties.putAll(properties.getInterceptor());
+		return interceptorProperties;
+	}
+
+	@Bean
+	public StatementFilter mybatisStatementFilter(MybatisMetricsProperties properties) {
+		StatementFilter filter = new StatementFilter();
+		filter.update(properties.getEnabled(), properties.getIncludes(), properties.getExcludes());
+		return filter;
+	}
+
+	@Bean
+	public MybatisInterceptorMetricsBinder mybatisInterceptorMetricsBinder(ObjectProvider<SqlSessionFactory> sqlSessionFactories,
+			ObjectProvider<MeterRegistry> registryProvider, StatementFilter mybatisStatementFilter) {
+		return new MybatisInterceptorMetricsBinder(sqlSessionFactories, registryProvider, mybatisStatementFilter);
+	}
+
+	@Bean
+	@ConditionalOnAvailableEndpoint
+	public StatementFilterEndpoint statementFilterEndpoint(StatementFilter mybatisStatementFilter) {
+		return new StatementFilterEndpoint(mybatisStatementFilter);
+	}
+
+	@Bean
+	@ConditionalOnAvailableEndpoint
+	public SlowQueryEndpoint slowQueryEndpoint(ObjectProvider<SqlSessionFactory> sqlSessionFactories) {
+		return new SlowQueryEndpoint(sqlSessionFactories);
+	}
+
+	@Bean
+	@ConditionalOnAvailableEndpoint
+	public TopStatementsEndpoint topStatementsEndpoint(ObjectProvider<SqlSessionFactory> sqlSessionFactories) {
+		return new TopStatementsEndpoint(sqlSessionFactories);
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(DruidDataSource.class)
+	static class DruidMetricsConfiguration {
+
+		@Bean
+		public MybatisMetrics druidMetrics(ObjectProvider<Map<String, DataSource>> dataSourcesProvider,
+				MybatisMetricsProperties properties) {
+			Map<String, DataSource> dataSourceMap = dataSourcesProvider.getIfAvailable(HashMap::new);
+			Map<String, DruidDataSource> druidDataSourceMap = new HashMap<>();
+			dataSourceMap.forEach((name, dataSource) -> {
+				if (dataSource instanceof DruidDataSource) {
+					druidDataSourceMap.put(name, (DruidDataSource) dataSource);
+				}
+			});
+			return new MybatisMetrics(druidDataSourceMap, properties.getDruid());
+		}
+
 	}
 
 }
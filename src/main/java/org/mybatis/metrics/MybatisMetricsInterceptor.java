@@ -1,5 +1,8 @@
 package org.mybatis.metrics;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.mapping.BoundSql;
@@ -9,8 +12,15 @@ import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 
 import java.util.Properties;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * 按 MappedStatement 统计正在执行的请求数、窗口内的并发峰值及错误数；耗时由 {@link MyBatisInterceptor} 统计。
+ * 游标查询只统计到返回 Cursor 为止，流式读取由 {@link MyBatisInterceptor} 的游标指标统计。
+ * 峰值窗口沿用 maxWindowSeconds/maxWindowSlots 配置；统计哪些语句由 {@link StatementFilter} 决定。
+ */
+@Slf4j
 @Intercepts(
     value = {
             @Signature(type= Executor.class,
@@ -22,57 +32,157 @@ import java.util.concurrent.TimeUnit;
                             CacheKey.class, BoundSql.class}),
             @Signature(type=Executor.class,
                     method="query",
-                    args={MappedStatement.class,Object.class,RowBounds.class,ResultHandler.class})
+                    args={MappedStatement.class,Object.class,RowBounds.class,ResultHandler.class}),
+            @Signature(type=Executor.class,
+                    method="queryCursor",
+                    args={MappedStatement.class,Object.class,RowBounds.class})
     }
 )
-public class MybatisMetricsInterceptor implements Interceptor {
+public class MybatisMetricsInterceptor implements Interceptor, MeterBinder {
+
+    private volatile StatementMetricsSettings settings = StatementMetricsSettings.from(new Properties());
+
+    /**
+     * bindTo 之前为 null，此时不包装执行器，避免指标注册到全局注册表后无法移除
+     */
+    private volatile MeterRegistry registry;
+
+    private volatile StatementFilter filter = new StatementFilter();
+
+    /**
+     * 按 Configuration 区分 SqlSessionFactory/数据源的标签；路由键只用于 {@link MyBatisInterceptor} 的耗时指标
+     */
+    private volatile StatementTags statementTags = new StatementTags();
 
-    private static final Stats MYBATIS_STAT = Profiler.Builder
-            .builder()
-            .type("mybatis")
-            .build();
+    /**
+     * 每个语句的过滤结果及并发指标，一次查找同时取得两者
+     */
+    private final ConcurrentMap<MappedStatement, ConcurrencyEntry> statements = new ConcurrentHashMap<>();
 
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
 
-        if (!System.getProperty("mybatisProfileEnable", "true").equalsIgnoreCase("true")) {
-            return invocation.proceed();
-        }
         final Object[] args = invocation.getArgs();
         if (args != null && args.length > 0) {
-            long begin = System.nanoTime();
             final MappedStatement mappedStatement = (MappedStatement) args[0];
-            if (mappedStatement != null) {
-                final String methodName = mappedStatement.getId(); //对应的是Mapper中的一个方法，如com.coohua.mapper.UserMapper.selectUser
-                final String declaringTypeName = mappedStatement.getResource();  //对应的就是一个Mapper类文件，如UserMapper.java
-                //以类名和方法名为标签
-                String[] tags = new String[]{"operation", methodName, "class", declaringTypeName};
+            //关闭或被 include/exclude 排除的语句直接执行
+            final ConcurrencyEntry entry = mappedStatement != null ? entryFor(mappedStatement) : null;
+            final StatementConcurrency concurrency = entry != null && filter.isIncluded(mappedStatement, entry.decision)
+                    ? entry.concurrency(mappedStatement) : null;
+            if (concurrency != null) {
+                boolean failed = true;
+                //每个请求 in-flight +1
+                concurrency.enter(System.nanoTime());
                 try {
-                    //每个请求gauge+1
-                    MYBATIS_STAT.incConc(tags);
-                    return invocation.proceed();
-                } catch (Throwable throwable) {
-                    //统计错误数
-                    MYBATIS_STAT.error(tags);
-                    throw throwable;
+                    Object result = invocation.proceed();
+                    failed = false;
+                    return result;
                 } finally {
-                    //请求结束gauge-1
-                    MYBATIS_STAT.decConc(tags);
-                    //统计请求执行时间
-                    MYBATIS_STAT.observe(System.nanoTime() - begin, TimeUnit.NANOSECONDS, tags);
+                    //请求结束 in-flight -1，并统计错误数
+                    concurrency.exit(failed);
                 }
             }
         }
         return invocation.proceed();
     }
 
+    private ConcurrencyEntry entryFor(MappedStatement mappedStatement) {
+        final ConcurrencyEntry entry = statements.get(mappedStatement);
+        if (entry != null) {
+            return entry;
+        }
+        return statements.computeIfAbsent(mappedStatement, ms -> new ConcurrencyEntry());
+    }
+
     @Override
     public Object plugin(Object target) {
-        return Plugin.wrap(target, this);
+        if (registry == null) {
+            return target;
+        }
+        if (target instanceof Executor) {
+            return Plugin.wrap(target, this);
+        }
+        return target;
     }
 
     @Override
     public void setProperties(Properties properties) {
+        this.settings = StatementMetricsSettings.from(properties);
+        this.filter = StatementFilter.from(properties);
+    }
+
+    public StatementTags getStatementTags() {
+        return statementTags;
+    }
+
+    public void setStatementTags(StatementTags statementTags) {
+        this.statementTags = statementTags;
+    }
+
+    public StatementFilter getStatementFilter() {
+        return filter;
+    }
+
+    /**
+     * @param filter the filter to share, e.g. one configured from Spring properties
+     */
+    public void setStatementFilter(StatementFilter filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        if (this.registry != registry) {
+            for (ConcurrencyEntry entry : statements.values()) {
+                entry.remove();
+            }
+            statements.clear();
+            this.registry = registry;
+        }
+    }
+
+    /**
+     * 语句的过滤结果及首次被统计时创建的并发指标
+     */
+    private final class ConcurrencyEntry {
+
+        private final StatementFilter.Decision decision = new StatementFilter.Decision();
+        private volatile StatementConcurrency concurrency;
+        /**
+         * 指标注册失败后置为 true，此后该语句不再统计
+         */
+        private volatile boolean unavailable;
+
+        /**
+         * @return the concurrency metrics, or {@code null} if they could not be registered
+         */
+        StatementConcurrency concurrency(MappedStatement mappedStatement) {
+            StatementConcurrency current = concurrency;
+            if (current == null && !unavailable) {
+                synchronized (this) {
+                    current = concurrency;
+                    if (current == null && !unavailable) {
+                        try {
+                            current = new StatementConcurrency(mappedStatement, settings, registry,
+                                    statementTags.tagsOf(mappedStatement.getConfiguration()));
+                            concurrency = current;
+                        } catch (RuntimeException e) {
+                            //指标注册在执行语句的线程上进行，失败时只放弃统计，不使语句执行失败
+                            unavailable = true;
+                            log.warn("MyBatis metrics of statement {} can not be registered and are not recorded",
+                                    mappedStatement.getId(), e);
+                        }
+                    }
+                }
+            }
+            return current;
+        }
+
+        synchronized void remove() {
+            if (concurrency != null) {
+                concurrency.remove();
+            }
+        }
 
     }
-}
\ No newline at end of file
+}
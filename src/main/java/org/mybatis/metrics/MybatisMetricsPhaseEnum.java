@@ -0,0 +1,37 @@
+package org.mybatis.metrics;
+
+/**
+ * Phase of a statement execution, used as the {@code phase} label.
+ *
+ * @author DL.Wan
+ */
+public enum MybatisMetricsPhaseEnum {
+
+    /**
+     * {@code StatementHandler.prepare}
+     */
+    prepare("prepare"),
+    /**
+     * {@code StatementHandler.parameterize}
+     */
+    parameterize("parameterize"),
+    /**
+     * {@code StatementHandler.query/update}, without the result mapping
+     */
+    execute("execute"),
+    /**
+     * {@code ResultSetHandler.handleResultSets}
+     */
+    results("results");
+
+    private final String code;
+
+    MybatisMetricsPhaseEnum(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+}
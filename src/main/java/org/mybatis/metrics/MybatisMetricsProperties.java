@@ -0,0 +1,120 @@
+package org.mybatis.metrics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MyBatis Metrics 配置
+ *
+ * @author DL.Wan
+ */
+@Data
+@ConfigurationProperties(prefix = MybatisMetricsProperties.PREFIX)
+public class MybatisMetricsProperties {
+
+	public static final String PREFIX = "mybatis.metrics";
+
+	/**
+	 * 是否统计 SQL 执行指标，未设置时沿用 -DmybatisProfileEnable（默认 true）；运行时可通过 /actuator/mybatismetricsfilter 修改
+	 */
+	private Boolean enabled;
+
+	/**
+	 * 只统计 id 匹配任一通配符（* 与 ?）的 MappedStatement，为空表示全部
+	 */
+	private List<String> includes = new ArrayList<>();
+
+	/**
+	 * 不统计 id 匹配任一通配符的 MappedStatement，优先于 includes
+	 */
+	private List<String> excludes = new ArrayList<>();
+
+	/**
+	 * 是否将 MyBatisInterceptor、MybatisMetricsInterceptor 注册到所有尚未注册同类拦截器的 SqlSessionFactory
+	 */
+	private boolean registerInterceptors = true;
+
+	/**
+	 * 自动注册的拦截器的属性，同 mybatis-config.xml 中 plugin 的 property，如 sampling、phases、slowQueries
+	 */
+	private Map<String, String> interceptor = new LinkedHashMap<>();
+
+	/**
+	 * Druid 连接池指标
+	 */
+	private Druid druid = new Druid();
+
+	/**
+	 * 连接获取/持有耗时指标，适用于任意连接池
+	 */
+	private Datasource datasource = new Datasource();
+
+	@Data
+	public static class Druid {
+
+		/**
+		 * 按 SQL 输出指标时最多保留的 SQL 数，0 表示不限制（以完整 SQL 为标签）；
+		 * 大于 0 时只保留 top-K 的 SQL（以 SQL 哈希为标签），其余合并为 sql="other"
+		 */
+		private int sqlTopK = 0;
+
+		/**
+		 * top-K 的排序依据
+		 */
+		private SqlRankBy sqlRankBy = SqlRankBy.EXECUTE_MILLIS;
+
+		/**
+		 * 按 SQL 输出的指标的刷新间隔：注册启动后新出现的 SQL，移除被 Druid 淘汰或重置的 SQL；0 表示只在启动时绑定一次
+		 */
+		private Duration sqlRefreshInterval = Duration.ofSeconds(30);
+
+		/**
+		 * 连接池指标快照的有效期：有效期内的抓取共用同一份快照，每个 getter 只调用一次
+		 */
+		private Duration snapshotTtl = Duration.ofSeconds(1);
+
+	}
+
+	@Data
+	public static class Datasource {
+
+		/**
+		 * 是否代理所有 DataSource Bean，记录 getConnection() 耗时与连接持有时间
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * 直方图的桶边界
+		 */
+		private List<Duration> slo = new ArrayList<>(Arrays.asList(Duration.ofMillis(1), Duration.ofMillis(5),
+				Duration.ofMillis(10), Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(500),
+				Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(30)));
+
+		/**
+		 * 不代理的 DataSource Bean 名称，如已自行统计连接的数据源；AbstractRoutingDataSource 始终不代理
+		 */
+		private List<String> excludes = new ArrayList<>();
+
+	}
+
+	public enum SqlRankBy {
+
+		/**
+		 * 执行次数
+		 */
+		EXECUTE_COUNT,
+		/**
+		 * 累计执行耗时
+		 */
+		EXECUTE_MILLIS
+
+	}
+
+}
@@ -0,0 +1,23 @@
+package org.mybatis.metrics;
+
+/**
+ * Outcome of an intercepted statement, used as the {@code status} label.
+ *
+ * @author DL.Wan
+ */
+public enum MybatisMetricsStatusEnum {
+
+    success("success"),
+    fail("fail");
+
+    private final String code;
+
+    MybatisMetricsStatusEnum(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+}
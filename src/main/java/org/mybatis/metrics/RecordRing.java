@@ -0,0 +1,99 @@
+package org.mybatis.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer single-consumer ring of two {@code long}s per entry, the per-thread buffer
+ * of {@link AsyncRecorder}. The producer publishes with a volatile write of {@code tail}, the
+ * consumer frees slots with a lazy set of {@code head}; the producer re-reads {@code head}
+ * only when its cached copy says the ring is full. Draining must be serialized by the caller.
+ *
+ * @author DL.Wan
+ */
+final class RecordRing {
+
+    /**
+     * Receives the drained entries.
+     */
+    interface EntryConsumer {
+
+        void accept(long key, long value);
+
+    }
+
+    private final long[] entries;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final WeakReference<Thread> producer;
+    /**
+     * 生产者缓存的 head，避免每次写入都读取消费者的 volatile 字段
+     */
+    private long cachedHead;
+
+    /**
+     * @param capacity the number of entries, a power of two
+     * @param producer the only thread that offers
+     */
+    RecordRing(int capacity, Thread producer) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.entries = new long[capacity * 2];
+        this.mask = capacity - 1;
+        this.producer = new WeakReference<>(producer);
+    }
+
+    /**
+     * Append an entry; called by the producer thread only.
+     * @return {@code false} if the ring is full and the entry was not added
+     */
+    boolean offer(long key, long value) {
+        final long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                return false;
+            }
+        }
+        final int slot = (int) (t & mask) << 1;
+        entries[slot] = key;
+        entries[slot + 1] = value;
+        //volatile 写：写入者随后读取 AsyncRecorder.running 时，停止方的最后一次 flush 必能看到本条
+        tail.set(t + 1);
+        return true;
+    }
+
+    /**
+     * Hand every published entry to {@code consumer} and free their slots.
+     * @return the number of entries drained
+     */
+    int drain(EntryConsumer consumer) {
+        final long h = head.get();
+        final long t = tail.get();
+        for (long i = h; i < t; i++) {
+            final int slot = (int) (i & mask) << 1;
+            consumer.accept(entries[slot], entries[slot + 1]);
+        }
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+
+    long size() {
+        return tail.get() - head.get();
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return whether the producer has ended and everything it wrote was drained
+     */
+    boolean isAbandoned() {
+        Thread thread = producer.get();
+        return (thread == null || !thread.isAlive()) && size() == 0;
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.mybatis.metrics;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Recognizes an {@link AbstractRoutingDataSource}, whose statements are tagged with the key a
+ * {@link RoutingKeyResolver} returns. Only loaded when spring-jdbc is present.
+ *
+ * @author DL.Wan
+ */
+final class RoutingDataSourceKeys {
+
+	private RoutingDataSourceKeys() {
+	}
+
+	/**
+	 * @param dataSource a data source
+	 * @return whether it routes each connection to one of several targets
+	 */
+	static boolean isRouting(DataSource dataSource) {
+		return dataSource instanceof AbstractRoutingDataSource;
+	}
+
+}
@@ -0,0 +1,27 @@
+package org.mybatis.metrics;
+
+import javax.sql.DataSource;
+
+/**
+ * Supplies the lookup key an {@code AbstractRoutingDataSource} routes the calling thread to,
+ * typically read from the same holder the application's {@code determineCurrentLookupKey()}
+ * reads. Declare one as a bean to tag the latency metrics of the statements on a routing data
+ * source with that key ({@code datasource}); without one they carry the bean name of the
+ * routing data source.
+ * <p>
+ * It is called once per statement execution, so it must be cheap, and it must return the key
+ * of the connection the statement runs on: inside a transaction, that of the connection bound
+ * when the transaction began, even if the holder changed since.
+ *
+ * @author DL.Wan
+ */
+@FunctionalInterface
+public interface RoutingKeyResolver {
+
+	/**
+	 * @param dataSource the routing data source of the {@code SqlSessionFactory}
+	 * @return the current key, or {@code null} for the default target
+	 */
+	Object currentKey(DataSource dataSource);
+
+}
@@ -0,0 +1,150 @@
+package org.mybatis.metrics;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Counts the statements one {@link Executor}, i.e. one {@code SqlSession}, executes between
+ * {@code commit}, {@code rollback} and {@code close}, and flags statement ids that ran more
+ * than {@code sessionRepeatThreshold} times in the same transaction, the usual sign of an
+ * N+1 pattern.
+ * <p>
+ * {@link MyBatisInterceptor} wraps every executor in its own tracker, so the state is
+ * confined to the session and needs no synchronization. Statements are counted when their
+ * {@code StatementHandler} is created, which also catches the nested selects issued from
+ * result mapping; those bypass the executor plugin chain.
+ *
+ * @author DL.Wan
+ */
+@SuppressWarnings({"rawtypes"})
+@Intercepts(
+        {
+                @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+                @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+                @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+                @Signature(type = Executor.class, method = "commit", args = {boolean.class}),
+                @Signature(type = Executor.class, method = "rollback", args = {boolean.class}),
+                @Signature(type = Executor.class, method = "close", args = {boolean.class}),
+        }
+)
+public class SessionTracker implements Interceptor {
+
+    /**
+     * 当前线程正在执行语句的会话，创建 StatementHandler 时据此计数
+     */
+    private static final ThreadLocal<SessionTracker> CURRENT = new ThreadLocal<>();
+
+    private final int repeatThreshold;
+    private final Function<Configuration, ConfigurationMetrics> metricsFor;
+
+    private int statements;
+    private final Map<String, int[]> statementCounts = new HashMap<>();
+    /**
+     * 经过执行器的最外层语句，StatementHandler 取不到 MappedStatement 时计入该语句
+     */
+    private MappedStatement current;
+    /**
+     * 执行器只执行同一 Configuration 的语句，首次计数时记下
+     */
+    private Configuration configuration;
+
+    /**
+     * @param repeatThreshold executions of one statement id per transaction above which it is flagged
+     * @param metricsFor resolves the meters of the session's configuration, which carry its tags;
+     *                   returns {@code null} while instrumentation is switched off
+     */
+    public SessionTracker(int repeatThreshold, Function<Configuration, ConfigurationMetrics> metricsFor) {
+        this.repeatThreshold = repeatThreshold;
+        this.metricsFor = metricsFor;
+    }
+
+    /**
+     * @return the tracker of the session executing a statement on this thread, if any
+     */
+    public static SessionTracker current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        switch (invocation.getMethod().getName()) {
+            case "commit":
+            case "rollback":
+            case "close":
+                try {
+                    return invocation.proceed();
+                } finally {
+                    end();
+                }
+            default:
+                break;
+        }
+        final SessionTracker previousTracker = CURRENT.get();
+        final MappedStatement previousStatement = current;
+        CURRENT.set(this);
+        current = (MappedStatement) invocation.getArgs()[0];
+        try {
+            return invocation.proceed();
+        } finally {
+            current = previousStatement;
+            if (previousTracker == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previousTracker);
+            }
+        }
+    }
+
+    /**
+     * Count a statement about to be prepared.
+     * @param statementHandlerStatement the statement of the newly created statement handler,
+     *                                  {@code null} if unknown to count it as the executing one
+     */
+    public void statementCreated(MappedStatement statementHandlerStatement) {
+        final MappedStatement mappedStatement = statementHandlerStatement != null ? statementHandlerStatement : current;
+        if (mappedStatement == null) {
+            return;
+        }
+        configuration = mappedStatement.getConfiguration();
+        statements++;
+        statementCounts.computeIfAbsent(mappedStatement.getId(), id -> new int[1])[0]++;
+    }
+
+    private void end() {
+        if (statements == 0) {
+            return;
+        }
+        final ConfigurationMetrics metrics = metricsFor.apply(configuration);
+        if (metrics != null) {
+            metrics.recordSession(statements);
+            for (Map.Entry<String, int[]> entry : statementCounts.entrySet()) {
+                if (entry.getValue()[0] > repeatThreshold) {
+                    metrics.recordRepeatedStatement(entry.getKey());
+                }
+            }
+        }
+        statements = 0;
+        statementCounts.clear();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.mybatis.metrics;
+
+/**
+ * One execution captured by {@link SlowQueryBuffer}.
+ *
+ * @author DL.Wan
+ */
+public class SlowQuery {
+
+    private final String id;
+    private final String sql;
+    private final long elapsedNanos;
+    private final String thread;
+    private final long timestamp;
+
+    /**
+     * @param id the {@code MappedStatement} id
+     * @param sql the SQL with {@code ?} placeholders; parameter values are never captured
+     * @param elapsedNanos the execution time
+     * @param thread the name of the executing thread
+     * @param timestamp epoch millis when the execution ended
+     */
+    public SlowQuery(String id, String sql, long elapsedNanos, String thread, long timestamp) {
+        this.id = id;
+        this.sql = sql;
+        this.elapsedNanos = elapsedNanos;
+        this.thread = thread;
+        this.timestamp = timestamp;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000D;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+}
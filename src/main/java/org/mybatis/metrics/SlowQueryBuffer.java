@@ -0,0 +1,196 @@
+package org.mybatis.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free buffer of the N slowest executions of the current window.
+ * <p>
+ * Callers first ask {@link #admits(long, long)}, which costs one volatile read: while the
+ * buffer is full, executions no slower than its fastest entry are rejected there. An admitted
+ * entry replaces the fastest entry with a CAS, so within a window slot durations only grow and
+ * a stale admission threshold can only be too low, never too high. When the window ends the
+ * entries are moved to {@link #previous()} and the buffer starts empty; the first write or
+ * read after the end does the move, so an idle buffer does not keep showing an old window.
+ *
+ * @author DL.Wan
+ */
+public class SlowQueryBuffer {
+
+    private static final Comparator<SlowQuery> SLOWEST_FIRST = Comparator.comparingLong(SlowQuery::getElapsedNanos).reversed();
+
+    private final long windowNanos;
+    private final AtomicReferenceArray<SlowQuery> entries;
+    private final AtomicReference<Admission> admission;
+    private volatile List<SlowQuery> previous = Collections.emptyList();
+
+    /**
+     * @param capacity the number of entries kept per window
+     * @param window the window length
+     * @param unit the unit of {@code window}
+     */
+    public SlowQueryBuffer(int capacity, long window, TimeUnit unit) {
+        this.windowNanos = unit.toNanos(window);
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.admission = new AtomicReference<>(new Admission(0, System.nanoTime() + windowNanos));
+    }
+
+    /**
+     * @param elapsedNanos the execution time
+     * @param nowNanos {@link System#nanoTime()} when the execution ended
+     * @return whether {@link #add} may keep an execution this slow
+     */
+    public boolean admits(long elapsedNanos, long nowNanos) {
+        final Admission current = admission.get();
+        return elapsedNanos > current.thresholdNanos || nowNanos - current.windowEndNanos >= 0;
+    }
+
+    /**
+     * Keep the entry if it is slower than the fastest entry of the current window.
+     * @param entry the execution
+     * @param nowNanos {@link System#nanoTime()} when the execution ended
+     */
+    public void add(SlowQuery entry, long nowNanos) {
+        final Admission current = rotateIfExpired(nowNanos);
+        while (true) {
+            int fastest = -1;
+            SlowQuery fastestEntry = null;
+            for (int i = 0; i < entries.length(); i++) {
+                SlowQuery candidate = entries.get(i);
+                if (candidate == null) {
+                    fastest = i;
+                    fastestEntry = null;
+                    break;
+                }
+                if (fastestEntry == null || candidate.getElapsedNanos() < fastestEntry.getElapsedNanos()) {
+                    fastest = i;
+                    fastestEntry = candidate;
+                }
+            }
+            if (fastest < 0 || (fastestEntry != null && fastestEntry.getElapsedNanos() >= entry.getElapsedNanos())) {
+                return;
+            }
+            if (entries.compareAndSet(fastest, fastestEntry, entry)) {
+                break;
+            }
+        }
+        raiseThreshold(current);
+    }
+
+    /**
+     * @return the entries of the current window, slowest first
+     */
+    public List<SlowQuery> current() {
+        return current(System.nanoTime());
+    }
+
+    /**
+     * @param nowNanos {@link System#nanoTime()}
+     * @return the entries of the window current at {@code nowNanos}, slowest first
+     */
+    public List<SlowQuery> current(long nowNanos) {
+        rotateIfExpired(nowNanos);
+        return sorted(slots());
+    }
+
+    /**
+     * @return the entries of the last completed window, slowest first
+     */
+    public List<SlowQuery> previous() {
+        return previous(System.nanoTime());
+    }
+
+    /**
+     * @param nowNanos {@link System#nanoTime()}
+     * @return the entries of the last window completed at {@code nowNanos}, slowest first
+     */
+    public List<SlowQuery> previous(long nowNanos) {
+        rotateIfExpired(nowNanos);
+        return previous;
+    }
+
+    private Admission rotateIfExpired(long nowNanos) {
+        final Admission current = admission.get();
+        return nowNanos - current.windowEndNanos >= 0 ? rotate(current, nowNanos) : current;
+    }
+
+    /**
+     * 只有 CAS 成功的线程移动并清空条目；按快照值 CAS 清空，与之并发写入的条目保留在新窗口
+     */
+    private Admission rotate(Admission expired, long nowNanos) {
+        Admission next = new Admission(0, nowNanos + windowNanos);
+        if (admission.compareAndSet(expired, next)) {
+            final SlowQuery[] moved = slots();
+            previous = sorted(moved);
+            for (int i = 0; i < moved.length; i++) {
+                if (moved[i] != null) {
+                    entries.compareAndSet(i, moved[i], null);
+                }
+            }
+            return next;
+        }
+        return admission.get();
+    }
+
+    /**
+     * 缓冲区满后，准入阈值为最快条目的耗时
+     */
+    private void raiseThreshold(Admission current) {
+        long threshold = Long.MAX_VALUE;
+        for (int i = 0; i < entries.length(); i++) {
+            SlowQuery entry = entries.get(i);
+            if (entry == null) {
+                return;
+            }
+            threshold = Math.min(threshold, entry.getElapsedNanos());
+        }
+        while (threshold > current.thresholdNanos
+                && !admission.compareAndSet(current, new Admission(threshold, current.windowEndNanos))) {
+            Admission latest = admission.get();
+            if (latest.windowEndNanos != current.windowEndNanos) {
+                return;
+            }
+            current = latest;
+        }
+    }
+
+    private SlowQuery[] slots() {
+        SlowQuery[] slots = new SlowQuery[entries.length()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = entries.get(i);
+        }
+        return slots;
+    }
+
+    private static List<SlowQuery> sorted(SlowQuery[] slots) {
+        List<SlowQuery> sorted = new ArrayList<>(slots.length);
+        for (SlowQuery entry : slots) {
+            if (entry != null) {
+                sorted.add(entry);
+            }
+        }
+        sorted.sort(SLOWEST_FIRST);
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * 阈值与窗口结束时间放在同一个不可变对象中，准入判断只需一次 volatile 读
+     */
+    private static class Admission {
+
+        private final long thresholdNanos;
+        private final long windowEndNanos;
+
+        Admission(long thresholdNanos, long windowEndNanos) {
+            this.thresholdNanos = thresholdNanos;
+            this.windowEndNanos = windowEndNanos;
+        }
+
+    }
+
+}
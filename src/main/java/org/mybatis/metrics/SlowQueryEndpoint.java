@@ -0,0 +1,66 @@
+package org.mybatis.metrics;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@code /actuator/mybatisslowqueries}：各 {@link MyBatisInterceptor} 采集的最慢执行
+ *
+ * @author DL.Wan
+ */
+@Endpoint(id = "mybatisslowqueries")
+public class SlowQueryEndpoint {
+
+	private final ObjectProvider<SqlSessionFactory> sqlSessionFactories;
+
+	public SlowQueryEndpoint(ObjectProvider<SqlSessionFactory> sqlSessionFactories) {
+		this.sqlSessionFactories = sqlSessionFactories;
+	}
+
+	@ReadOperation
+	public SlowQueriesDescriptor slowQueries() {
+		List<SlowQuery> current = new ArrayList<>();
+		List<SlowQuery> previous = new ArrayList<>();
+		for (MyBatisInterceptor interceptor : SqlSessionFactories.interceptors(sqlSessionFactories, MyBatisInterceptor.class)) {
+			SlowQueryBuffer buffer = interceptor.getSlowQueries();
+			if (buffer != null) {
+				current.addAll(buffer.current());
+				previous.addAll(buffer.previous());
+			}
+		}
+		Comparator<SlowQuery> slowestFirst = Comparator.comparingLong(SlowQuery::getElapsedNanos).reversed();
+		current.sort(slowestFirst);
+		previous.sort(slowestFirst);
+		return new SlowQueriesDescriptor(current, previous);
+	}
+
+	/**
+	 * Slow queries of the current and of the last completed window.
+	 */
+	public static final class SlowQueriesDescriptor {
+
+		private final List<SlowQuery> current;
+		private final List<SlowQuery> previous;
+
+		private SlowQueriesDescriptor(List<SlowQuery> current, List<SlowQuery> previous) {
+			this.current = current;
+			this.previous = previous;
+		}
+
+		public List<SlowQuery> getCurrent() {
+			return current;
+		}
+
+		public List<SlowQuery> getPrevious() {
+			return previous;
+		}
+
+	}
+
+}
@@ -0,0 +1,195 @@
+package org.mybatis.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitter sketch (Metwally et al.) over weighted keys, holding at most
+ * {@code capacity} counters. A key whose true weight exceeds {@code total / capacity} is
+ * guaranteed to be tracked. Not thread-safe.
+ * <p>
+ * The counters form an indexed min-heap, so an eviction costs {@code O(log capacity)}. A key
+ * taking over an evicted counter inherits its count as {@code error}: its true weight lies
+ * between {@code count - error} and {@code count}, and no untracked key weighs more than the
+ * smallest count.
+ *
+ * @author DL.Wan
+ */
+public class SpaceSaving<K> {
+
+	private final int capacity;
+	private final Map<K, Counter<K>> counters;
+	/**
+	 * 按 count 的最小堆，Counter.index 为其在堆中的位置
+	 */
+	private final Counter<K>[] heap;
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	public SpaceSaving(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.counters = new HashMap<>(capacity * 2);
+		this.heap = new Counter[capacity];
+	}
+
+	/**
+	 * Add {@code weight} to {@code key}, evicting the smallest counter if the sketch is full.
+	 * @param key the key
+	 * @param weight a non-negative weight
+	 * @return the evicted key, or {@code null}
+	 */
+	public K offer(K key, long weight) {
+		Counter<K> counter = counters.get(key);
+		if (counter != null) {
+			counter.count += weight;
+			siftDown(counter.index);
+			return null;
+		}
+		if (size < capacity) {
+			counter = new Counter<>(key, weight, 0);
+			counters.put(key, counter);
+			heap[size] = counter;
+			counter.index = size++;
+			siftUp(counter.index);
+			return null;
+		}
+		//复用最小的计数器：新 key 继承其计数作为误差上界
+		Counter<K> min = heap[0];
+		K evicted = min.key;
+		counters.remove(evicted);
+		min.key = key;
+		min.error = min.count;
+		min.count += weight;
+		counters.put(key, min);
+		siftDown(0);
+		return evicted;
+	}
+
+	public boolean contains(K key) {
+		return counters.containsKey(key);
+	}
+
+	/**
+	 * @param key the key
+	 * @return the upper bound of its weight, 0 if not tracked
+	 */
+	public long count(K key) {
+		Counter<K> counter = counters.get(key);
+		return counter != null ? counter.count : 0;
+	}
+
+	/**
+	 * @param key the key
+	 * @return how much of its count may come from the keys it evicted, 0 if not tracked
+	 */
+	public long error(K key) {
+		Counter<K> counter = counters.get(key);
+		return counter != null ? counter.error : 0;
+	}
+
+	/**
+	 * Drop a key, e.g. when the underlying item no longer exists.
+	 * @param key the key
+	 */
+	public void remove(K key) {
+		Counter<K> counter = counters.remove(key);
+		if (counter == null) {
+			return;
+		}
+		final int index = counter.index;
+		Counter<K> last = heap[--size];
+		heap[size] = null;
+		if (index < size) {
+			heap[index] = last;
+			last.index = index;
+			siftDown(index);
+			siftUp(last.index);
+		}
+	}
+
+	/**
+	 * @return the tracked keys, in no particular order
+	 */
+	public List<K> keys() {
+		return new ArrayList<>(counters.keySet());
+	}
+
+	/**
+	 * The guaranteed top-{@code k}: of the {@code k} largest counters, the keys whose lower
+	 * bound {@code count - error} is at least the {@code (k+1)}-th largest count, which bounds
+	 * the weight of every key outside them. Keys that merely inherited a large count from an
+	 * eviction are left out until they have earned their place.
+	 * @param k the number of keys wanted
+	 * @return at most {@code k} keys, heaviest first
+	 */
+	public List<K> guaranteedTop(int k) {
+		Counter<K>[] sorted = Arrays.copyOf(heap, size);
+		Arrays.sort(sorted, (a, b) -> Long.compare(b.count, a.count));
+		final int limit = Math.min(k, sorted.length);
+		//第 k+1 大的计数是其余所有 key（含未跟踪的）真实权重的上界
+		final long threshold = limit < sorted.length ? sorted[limit].count : 0;
+		List<K> keys = new ArrayList<>(limit);
+		for (int i = 0; i < limit; i++) {
+			if (sorted[i].count - sorted[i].error >= threshold) {
+				keys.add(sorted[i].key);
+			}
+		}
+		return keys;
+	}
+
+	private void siftUp(int index) {
+		Counter<K> counter = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (heap[parent].count <= counter.count) {
+				break;
+			}
+			heap[index] = heap[parent];
+			heap[index].index = index;
+			index = parent;
+		}
+		heap[index] = counter;
+		counter.index = index;
+	}
+
+	private void siftDown(int index) {
+		Counter<K> counter = heap[index];
+		final int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+				child++;
+			}
+			if (counter.count <= heap[child].count) {
+				break;
+			}
+			heap[index] = heap[child];
+			heap[index].index = index;
+			index = child;
+		}
+		heap[index] = counter;
+		counter.index = index;
+	}
+
+	private static class Counter<K> {
+
+		private K key;
+		private long count;
+		private long error;
+		private int index;
+
+		Counter(K key, long count, long error) {
+			this.key = key;
+			this.count = count;
+			this.error = error;
+		}
+
+	}
+
+}
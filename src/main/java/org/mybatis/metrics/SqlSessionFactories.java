@@ -0,0 +1,41 @@
+package org.mybatis.metrics;
+
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the interceptors registered in the {@link SqlSessionFactory} beans.
+ *
+ * @author DL.Wan
+ */
+final class SqlSessionFactories {
+
+	private SqlSessionFactories() {
+	}
+
+	/**
+	 * @param sqlSessionFactories the factories
+	 * @param type the interceptor type
+	 * @return the distinct interceptors of that type, in registration order
+	 */
+	static <T extends Interceptor> List<T> interceptors(ObjectProvider<SqlSessionFactory> sqlSessionFactories, Class<T> type) {
+		Set<Interceptor> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<T> interceptors = new ArrayList<>();
+		sqlSessionFactories.orderedStream().forEach(factory -> {
+			for (Interceptor interceptor : factory.getConfiguration().getInterceptors()) {
+				if (type.isInstance(interceptor) && seen.add(interceptor)) {
+					interceptors.add(type.cast(interceptor));
+				}
+			}
+		});
+		return interceptors;
+	}
+
+}
@@ -0,0 +1,124 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Tags;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.util.function.Supplier;
+
+/**
+ * Registers the metrics interceptors into every {@link SqlSessionFactory} bean that does not
+ * have one of the same type yet, and tags the statements of each factory with its bean name
+ * ({@code factory}) and the bean name of its data source ({@code datasource}). When that data
+ * source is an {@code AbstractRoutingDataSource} and a {@link RoutingKeyResolver} bean exists,
+ * the {@code datasource} tag of the latency metrics is the key it returns instead. With {@code cacheMetrics} on, the second-level
+ * caches of the factory are decorated here, before any statement executes.
+ *
+ * @author DL.Wan
+ */
+public class SqlSessionFactoryMetricsPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+
+	private static final boolean ROUTING_PRESENT = ClassUtils.isPresent(
+			"org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource", SqlSessionFactoryMetricsPostProcessor.class.getClassLoader());
+
+	private final ObjectProvider<MyBatisInterceptor> myBatisInterceptor;
+	private final ObjectProvider<MybatisMetricsInterceptor> mybatisMetricsInterceptor;
+	private final ObjectProvider<RoutingKeyResolver> routingKeyResolver;
+	private final StatementTags statementTags = new StatementTags();
+	private ConfigurableListableBeanFactory beanFactory;
+
+	/**
+	 * @param myBatisInterceptor the interceptor to register, if available
+	 * @param mybatisMetricsInterceptor the interceptor to register, if available
+	 * @param routingKeyResolver the resolver of routing keys, if available
+	 */
+	public SqlSessionFactoryMetricsPostProcessor(ObjectProvider<MyBatisInterceptor> myBatisInterceptor,
+			ObjectProvider<MybatisMetricsInterceptor> mybatisMetricsInterceptor, ObjectProvider<RoutingKeyResolver> routingKeyResolver) {
+		this.myBatisInterceptor = myBatisInterceptor;
+		this.mybatisMetricsInterceptor = mybatisMetricsInterceptor;
+		this.routingKeyResolver = routingKeyResolver;
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		if (beanFactory instanceof ConfigurableListableBeanFactory) {
+			this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+		}
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (!(bean instanceof SqlSessionFactory)) {
+			return bean;
+		}
+		Configuration configuration = ((SqlSessionFactory) bean).getConfiguration();
+		addIfAbsent(configuration, MyBatisInterceptor.class, myBatisInterceptor.getIfAvailable());
+		addIfAbsent(configuration, MybatisMetricsInterceptor.class, mybatisMetricsInterceptor.getIfAvailable());
+
+		DataSource dataSource = configuration.getEnvironment() != null ? configuration.getEnvironment().getDataSource() : null;
+		Tags tags = Tags.of(StatementTags.FACTORY, beanName, StatementTags.DATASOURCE, dataSourceName(configuration.getEnvironment()));
+		statementTags.register(configuration, tags, routingKey(dataSource));
+		for (Interceptor interceptor : configuration.getInterceptors()) {
+			if (interceptor instanceof MyBatisInterceptor) {
+				((MyBatisInterceptor) interceptor).setStatementTags(statementTags);
+				//在任何语句执行前装饰二级缓存
+				((MyBatisInterceptor) interceptor).instrumentCaches(configuration);
+			} else if (interceptor instanceof MybatisMetricsInterceptor) {
+				((MybatisMetricsInterceptor) interceptor).setStatementTags(statementTags);
+			}
+		}
+		return bean;
+	}
+
+	/**
+	 * 路由键由应用提供的 RoutingKeyResolver 给出，不反射调用 determineCurrentLookupKey
+	 */
+	private Supplier<?> routingKey(DataSource dataSource) {
+		if (!ROUTING_PRESENT || dataSource == null || !RoutingDataSourceKeys.isRouting(dataSource)) {
+			return null;
+		}
+		RoutingKeyResolver resolver = routingKeyResolver.getIfUnique();
+		return resolver != null ? () -> resolver.currentKey(dataSource) : null;
+	}
+
+	private static void addIfAbsent(Configuration configuration, Class<? extends Interceptor> type, Interceptor interceptor) {
+		if (interceptor == null) {
+			return;
+		}
+		for (Interceptor registered : configuration.getInterceptors()) {
+			if (type.isInstance(registered)) {
+				return;
+			}
+		}
+		configuration.addInterceptor(interceptor);
+	}
+
+	/**
+	 * 查找已创建的 DataSource 单例中与之相同的实例，找不到时使用 MyBatis Environment 的 id
+	 */
+	private String dataSourceName(Environment environment) {
+		if (environment == null) {
+			return StatementTags.DEFAULT_ROUTE;
+		}
+		DataSource dataSource = environment.getDataSource();
+		if (beanFactory != null && dataSource != null) {
+			for (String name : beanFactory.getBeanNamesForType(DataSource.class, false, false)) {
+				if (beanFactory.containsSingleton(name) && beanFactory.getSingleton(name) == dataSource) {
+					return name;
+				}
+			}
+		}
+		return environment.getId();
+	}
+
+}
@@ -0,0 +1,73 @@
+package org.mybatis.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free set of the distinct SQL texts one statement has generated, kept as 64-bit
+ * fingerprints in an open-addressed {@link AtomicLongArray}. A text already seen costs a
+ * hash and a few reads; a new one a single CAS. Once {@code limit} shapes are held the set
+ * stops growing and {@link #size()} stays at the limit, meaning "at least this many".
+ *
+ * @author DL.Wan
+ */
+public class SqlShapes {
+
+    private static final long EMPTY = 0L;
+
+    private final AtomicLongArray table;
+    private final int mask;
+    private final int limit;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param limit the number of distinct shapes to count up to
+     */
+    public SqlShapes(int limit) {
+        //装载因子不超过 1/2，探测序列较短
+        int capacity = Integer.highestOneBit(Math.max(1, limit) * 2 - 1) << 1;
+        this.table = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.limit = limit;
+    }
+
+    /**
+     * @param sql the generated SQL
+     */
+    public void add(String sql) {
+        long fingerprint = fingerprint(sql);
+        int index = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        for (int probe = 0; probe <= mask; probe++, index = (index + 1) & mask) {
+            long current = table.get(index);
+            if (current == fingerprint) {
+                return;
+            }
+            if (current == EMPTY) {
+                if (size.get() >= limit) {
+                    return;
+                }
+                if (table.compareAndSet(index, EMPTY, fingerprint)) {
+                    size.incrementAndGet();
+                    return;
+                }
+                //被其他线程抢占，若写入的是同一指纹则已存在
+                if (table.get(index) == fingerprint) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the distinct shapes seen, at most the limit
+     */
+    public int size() {
+        return Math.min(size.get(), limit);
+    }
+
+    private static long fingerprint(String sql) {
+        long fingerprint = ((long) sql.hashCode() << 32) ^ (sql.length() * 0x9E3779B97F4A7C15L);
+        return fingerprint == EMPTY ? 1L : fingerprint;
+    }
+
+}
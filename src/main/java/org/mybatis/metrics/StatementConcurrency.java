@@ -0,0 +1,85 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-flight executions of one {@link MappedStatement} and their peak over a sliding window.
+ * <p>
+ * The peak is taken from the exact count each entry produced; a thread that does not raise
+ * the peak of the current slot returns from {@link WindowedMax#record} after a single read.
+ *
+ * @author DL.Wan
+ */
+public class StatementConcurrency {
+
+    private final AtomicLong inFlight = new AtomicLong();
+    private final WindowedMax peak;
+    private final Counter errors;
+    private final MeterRegistry registry;
+    private final Gauge inFlightGauge;
+    private final Gauge peakGauge;
+
+    /**
+     * @param mappedStatement the statement
+     * @param settings the peak window settings
+     * @param registry the registry to register the meters with
+     * @param extraTags tags added to every meter, see {@link StatementTags}
+     */
+    public StatementConcurrency(MappedStatement mappedStatement, StatementMetricsSettings settings, MeterRegistry registry,
+            Tags extraTags) {
+        final Tags tags = Tags.of("operation", mappedStatement.getId(), "class", String.valueOf(mappedStatement.getResource()))
+                .and(extraTags);
+        this.registry = registry;
+        this.peak = new WindowedMax(settings.getMaxWindowSeconds(), TimeUnit.SECONDS, settings.getMaxWindowSlots());
+        this.errors = Counter.builder(MybatisMetrics.METRIC_NAME_ERRORS)
+                .description("Failed sql commands")
+                .tags(tags)
+                .register(registry);
+        this.inFlightGauge = Gauge.builder(MybatisMetrics.METRIC_NAME_INFLIGHT, inFlight, AtomicLong::get)
+                .description("Sql commands currently executing")
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+        this.peakGauge = Gauge.builder(MybatisMetrics.METRIC_NAME_INFLIGHT_PEAK, peak, max -> max.get(System.nanoTime()))
+                .description("Peak sql commands executing concurrently over the recent window")
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    /**
+     * An execution starts.
+     * @param nowNanos {@link System#nanoTime()}
+     */
+    public void enter(long nowNanos) {
+        peak.record(inFlight.incrementAndGet(), nowNanos);
+    }
+
+    /**
+     * An execution ends.
+     * @param failed whether it threw
+     */
+    public void exit(boolean failed) {
+        inFlight.decrementAndGet();
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Remove the meters from the registry they were registered with.
+     */
+    public void remove() {
+        registry.remove(errors);
+        registry.remove(inFlightGauge);
+        registry.remove(peakGauge);
+    }
+
+}
@@ -0,0 +1,204 @@
+package org.mybatis.metrics;
+
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Kill switch and include/exclude glob patterns deciding which statements are measured.
+ * <p>
+ * The rules are an immutable {@link Rules} object published through one volatile field and
+ * replaced as a whole by {@link #update}, each time with a new version. The decision for a
+ * statement is cached in a {@link Decision} held by the caller next to its other per-statement
+ * state, together with the version it was taken under, so a call reads the rules once and
+ * matches the patterns only the first time a statement is seen after a change.
+ * A statement is included when no include pattern is set or one matches its id, and no
+ * exclude pattern matches.
+ *
+ * @author DL.Wan
+ */
+public class StatementFilter {
+
+    public static final String ENABLED = "enabled";
+    public static final String INCLUDES = "includes";
+    public static final String EXCLUDES = "excludes";
+
+    /**
+     * 兼容旧的 -DmybatisProfileEnable 开关，仅在创建时读取一次
+     */
+    private static final String LEGACY_ENABLED_PROPERTY = "mybatisProfileEnable";
+
+    /**
+     * 版本号在所有实例间递增：替换拦截器的 StatementFilter 后，已缓存的 Decision 不会误认新规则的版本
+     */
+    private static final AtomicInteger VERSIONS = new AtomicInteger();
+
+    private volatile Rules rules;
+
+    public StatementFilter() {
+        this.rules = new Rules(VERSIONS.incrementAndGet(), Boolean.parseBoolean(System.getProperty(LEGACY_ENABLED_PROPERTY, "true")),
+                Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Read {@code enabled}, {@code includes} and {@code excludes} (comma separated globs)
+     * from the interceptor properties.
+     * @param properties the interceptor properties
+     * @return the filter
+     */
+    public static StatementFilter from(Properties properties) {
+        StatementFilter filter = new StatementFilter();
+        String enabled = properties.getProperty(ENABLED);
+        filter.update(enabled != null ? Boolean.valueOf(enabled) : null,
+                split(properties.getProperty(INCLUDES)), split(properties.getProperty(EXCLUDES)));
+        return filter;
+    }
+
+    /**
+     * Replace the rules; {@code null} arguments keep the current value.
+     * @param enabled whether statements are measured at all
+     * @param includes the include globs
+     * @param excludes the exclude globs
+     * @return the new rules
+     */
+    public synchronized Rules update(Boolean enabled, List<String> includes, List<String> excludes) {
+        Rules current = rules;
+        Rules updated = new Rules(VERSIONS.incrementAndGet(),
+                enabled != null ? enabled : current.enabled,
+                includes != null ? includes : current.includes,
+                excludes != null ? excludes : current.excludes);
+        rules = updated;
+        return updated;
+    }
+
+    /**
+     * @return the current rules
+     */
+    public Rules getRules() {
+        return rules;
+    }
+
+    /**
+     * @return whether the kill switch lets anything be measured
+     */
+    public boolean isEnabled() {
+        return rules.enabled;
+    }
+
+    /**
+     * @param mappedStatement the statement about to execute
+     * @param decision the cached decision for that statement, one per statement
+     * @return whether it is measured under the current rules
+     */
+    public boolean isIncluded(MappedStatement mappedStatement, Decision decision) {
+        final Rules current = rules;
+        if (!current.enabled) {
+            return false;
+        }
+        if (current.matchesAll) {
+            return true;
+        }
+        return decision.included(current, mappedStatement.getId());
+    }
+
+    /**
+     * @param value comma separated values, may be {@code null}
+     * @return the trimmed, non-empty values, or {@code null} if {@code value} is {@code null}
+     */
+    static List<String> split(String value) {
+        if (value == null) {
+            return null;
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * One version of the rules.
+     */
+    public static final class Rules {
+
+        private final int version;
+        private final boolean enabled;
+        private final List<String> includes;
+        private final List<String> excludes;
+        private final Pattern[] includePatterns;
+        private final Pattern[] excludePatterns;
+        /**
+         * 无 include/exclude 时无需按语句判断
+         */
+        private final boolean matchesAll;
+
+        private Rules(int version, boolean enabled, List<String> includes, List<String> excludes) {
+            this.version = version;
+            this.enabled = enabled;
+            this.includes = Collections.unmodifiableList(includes);
+            this.excludes = Collections.unmodifiableList(excludes);
+            this.includePatterns = includes.stream().map(StatementPatterns::compile).toArray(Pattern[]::new);
+            this.excludePatterns = excludes.stream().map(StatementPatterns::compile).toArray(Pattern[]::new);
+            this.matchesAll = includes.isEmpty() && excludes.isEmpty();
+        }
+
+        boolean matches(String statementId) {
+            if (includePatterns.length > 0 && !anyMatches(includePatterns, statementId)) {
+                return false;
+            }
+            return !anyMatches(excludePatterns, statementId);
+        }
+
+        private static boolean anyMatches(Pattern[] patterns, String statementId) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(statementId).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public List<String> getIncludes() {
+            return includes;
+        }
+
+        public List<String> getExcludes() {
+            return excludes;
+        }
+
+    }
+
+    /**
+     * The decision for one statement, packed with the version it was taken under into one
+     * int so that a racing reader sees either the old or the new decision, never a mix.
+     */
+    public static final class Decision {
+
+        private int state = -1;
+
+        boolean included(Rules rules, String statementId) {
+            int current = state;
+            if (current == -1 || current >>> 1 != rules.version) {
+                boolean included = rules.matches(statementId);
+                current = rules.version << 1 | (included ? 1 : 0);
+                state = current;
+            }
+            return (current & 1) != 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.mybatis.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+/**
+ * {@code /actuator/mybatismetricsfilter}：查看及修改 SQL 指标开关与 include/exclude 规则，
+ * includes/excludes 为逗号分隔的通配符，空字符串表示清空，未传入的参数保持不变
+ *
+ * @author DL.Wan
+ */
+@Endpoint(id = "mybatismetricsfilter")
+public class StatementFilterEndpoint {
+
+	private final StatementFilter filter;
+
+	public StatementFilterEndpoint(StatementFilter filter) {
+		this.filter = filter;
+	}
+
+	@ReadOperation
+	public StatementFilter.Rules rules() {
+		return filter.getRules();
+	}
+
+	@WriteOperation
+	public StatementFilter.Rules update(@Nullable Boolean enabled, @Nullable String includes, @Nullable String excludes) {
+		return filter.update(enabled, StatementFilter.split(includes), StatementFilter.split(excludes));
+	}
+
+}
@@ -0,0 +1,477 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Meters of one {@link MappedStatement}, registered once per status so that recording an
+ * execution needs neither a tag array nor a registry lookup.
+ * <p>
+ * The latency buckets ({@code latencyBuckets}) are the service level objectives of the
+ * {@code mybatis.requests} Timer, and its max is kept over {@code maxWindowSeconds} in
+ * {@code maxWindowSlots} slots by the Timer's distribution statistic buffer; neither needs
+ * a histogram of its own. With sampling on, the calls are weighted, which a Timer cannot
+ * record, so {@link WeightedHistogram} takes its place and keeps the max in a
+ * {@link WindowedMax}, as {@link StatementConcurrency} does for the in-flight peak.
+ *
+ * @author DL.Wan
+ */
+public class StatementMetrics {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000D;
+    private static final long SAMPLING_ADJUST_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_SAMPLE_INTERVAL = 1 << 16;
+
+    private final String id;
+    private final String command;
+    private final MeterRegistry registry;
+    private final Tags tags;
+    /**
+     * 区分 SqlSessionFactory/数据源的附加标签
+     */
+    private final Tags extraTags;
+    /**
+     * 未开启采样时按状态记录的 Timer，开启时为 null，改用 sampled
+     */
+    private final Timer[] timers;
+    /**
+     * 按 MybatisMetricsPhaseEnum 下标，未开启 phases 时为 null
+     */
+    private final Timer[] phases;
+    /**
+     * 仅 SELECT 语句记录返回行数，其余为 null
+     */
+    private final DistributionSummary rows;
+    private final Counter largeResults;
+    private final long largeResultThreshold;
+    private final double[] rowSlos;
+    private final Duration[] latencySlos;
+    /**
+     * 一级缓存命中/未命中，未开启 cacheMetrics 或非 SELECT 时为 null
+     */
+    private final Counter localCacheHits;
+    private final Counter localCacheMisses;
+    /**
+     * 批量执行的分布，首次 flush 到该语句时注册
+     */
+    private volatile DistributionSummary[] batch;
+    /**
+     * 游标查询的指标，首次 queryCursor 时注册
+     */
+    private volatile CursorMetrics cursor;
+    /**
+     * 绑定参数个数与 SQL 长度，未开启 parameterShapes 时为 null；动态语句另统计不同 SQL 数
+     */
+    private final DistributionSummary parameters;
+    private final DistributionSummary sqlLength;
+    private final SqlShapes shapes;
+    private final StatementRate rate;
+    /**
+     * 异步记录模式下所属的 AsyncRecorder 及在其中的下标，未开启时为 null
+     */
+    private AsyncRecorder recorder;
+    private int recorderIndex = -1;
+
+    /**
+     * 采样：目标每秒计时次数（0 表示不采样）、当前采样间隔 N（每 N 次计时一次）。
+     * Timer 无法按权重记录，开启采样时按状态改用 WeightedHistogram：精确计数，耗时与分桶按 N 加权
+     */
+    private final long samplingTargetRate;
+    private final WeightedHistogram[] sampled;
+    private volatile int sampleInterval = 1;
+    private final AtomicLong lastAdjustNanos = new AtomicLong(System.nanoTime());
+    private volatile double lastAdjustCount;
+
+    /**
+     * @param mappedStatement the statement
+     * @param settings window and bucket settings
+     * @param registry the registry to register the meters with
+     * @param extraTags tags added to every meter, see {@link StatementTags}
+     */
+    public StatementMetrics(MappedStatement mappedStatement, StatementMetricsSettings settings, MeterRegistry registry,
+            Tags extraTags) {
+        final String className = mappedStatement.getId();
+        final String command = mappedStatement.getSqlCommandType().name();
+        final Duration[] latencySlos = settings.latencySlosFor(className);
+        final Duration maxWindow = Duration.ofSeconds(settings.getMaxWindowSeconds());
+        this.id = className;
+        this.command = command;
+        this.registry = registry;
+        this.extraTags = extraTags;
+        this.tags = Tags.of("class", className, "command", command).and(extraTags);
+        this.samplingTargetRate = settings.isSampling() ? settings.getSamplingTargetRate() : 0;
+        //采样时未计时的调用不检查 tick 边界
+        this.rate = new StatementRate(System.nanoTime(), samplingTargetRate > 0);
+        MybatisMetricsStatusEnum[] statuses = MybatisMetricsStatusEnum.values();
+        if (samplingTargetRate > 0) {
+            this.timers = null;
+            this.sampled = new WeightedHistogram[statuses.length];
+            for (MybatisMetricsStatusEnum status : statuses) {
+                sampled[status.ordinal()] = sampledHistogram(status, latencySlos, maxWindow, settings.getMaxWindowSlots());
+            }
+        } else {
+            this.sampled = null;
+            this.timers = new Timer[statuses.length];
+            for (MybatisMetricsStatusEnum status : statuses) {
+                timers[status.ordinal()] = Timer.builder(MybatisMetrics.METRIC_NAME_REQUESTS)
+                        .description("Sql command latency")
+                        .tags(tags)
+                        .tag("status", status.getCode())
+                        .serviceLevelObjectives(latencySlos)
+                        .distributionStatisticExpiry(maxWindow)
+                        .distributionStatisticBufferLength(settings.getMaxWindowSlots())
+                        .register(registry);
+            }
+        }
+        if (mappedStatement.getSqlCommandType() == SqlCommandType.SELECT) {
+            this.rows = DistributionSummary.builder(MybatisMetrics.METRIC_NAME_RESULT_ROWS)
+                    .description("Rows returned by a query")
+                    .tags(tags)
+                    .serviceLevelObjectives(settings.getRowSlos())
+                    .register(registry);
+            this.largeResults = Counter.builder(MybatisMetrics.METRIC_NAME_LARGE_RESULTS)
+                    .description("Queries returning at least largeResultThreshold rows")
+                    .tags(tags)
+                    .register(registry);
+        } else {
+            this.rows = null;
+            this.largeResults = null;
+        }
+        this.largeResultThreshold = settings.getLargeResultThreshold();
+        this.rowSlos = settings.getRowSlos();
+        this.latencySlos = latencySlos;
+        if (settings.isCacheMetrics() && mappedStatement.getSqlCommandType() == SqlCommandType.SELECT) {
+            this.localCacheHits = localCacheCounter("hit");
+            this.localCacheMisses = localCacheCounter("miss");
+        } else {
+            this.localCacheHits = null;
+            this.localCacheMisses = null;
+        }
+        if (settings.isParameterShapes()) {
+            this.parameters = DistributionSummary.builder(MybatisMetrics.METRIC_NAME_SQL_PARAMETERS)
+                    .description("Bound parameters per prepared sql")
+                    .tags(tags)
+                    .serviceLevelObjectives(settings.getParameterSlos())
+                    .register(registry);
+            this.sqlLength = DistributionSummary.builder(MybatisMetrics.METRIC_NAME_SQL_LENGTH)
+                    .description("Length of the prepared sql")
+                    .baseUnit("characters")
+                    .tags(tags)
+                    .serviceLevelObjectives(settings.getSqlLengthSlos())
+                    .register(registry);
+            //RawSqlSource/StaticSqlSource 只生成一种 SQL，其余（动态 SQL、Provider 等）才统计
+            final SqlSource sqlSource = mappedStatement.getSqlSource();
+            if (!(sqlSource instanceof RawSqlSource) && !(sqlSource instanceof StaticSqlSource)) {
+                this.shapes = new SqlShapes(settings.getSqlShapeLimit());
+                Gauge.builder(MybatisMetrics.METRIC_NAME_SQL_SHAPES, shapes, SqlShapes::size)
+                        .description("Distinct sql texts generated by a dynamic statement, up to sqlShapeLimit")
+                        .tags(tags)
+                        .strongReference(true)
+                        .register(registry);
+            } else {
+                this.shapes = null;
+            }
+        } else {
+            this.parameters = null;
+            this.sqlLength = null;
+            this.shapes = null;
+        }
+        if (settings.isPhases()) {
+            MybatisMetricsPhaseEnum[] phaseValues = MybatisMetricsPhaseEnum.values();
+            this.phases = new Timer[phaseValues.length];
+            for (MybatisMetricsPhaseEnum phase : phaseValues) {
+                phases[phase.ordinal()] = Timer.builder(MybatisMetrics.METRIC_NAME_PHASE)
+                        .description("Sql command phase latency")
+                        .tags(tags)
+                        .tag("phase", phase.getCode())
+                        .serviceLevelObjectives(latencySlos)
+                        .register(registry);
+            }
+        } else {
+            this.phases = null;
+        }
+    }
+
+    /**
+     * 采样时的 mybatis.requests：FunctionTimer 给出精确次数与加权总耗时，
+     * 分桶（le 标签，累计值）与窗口最大值另以 Gauge 导出
+     */
+    private WeightedHistogram sampledHistogram(MybatisMetricsStatusEnum status, Duration[] latencySlos, Duration maxWindow,
+            int maxWindowSlots) {
+        final WeightedHistogram histogram = new WeightedHistogram(latencySlos, maxWindow.toNanos(), TimeUnit.NANOSECONDS,
+                maxWindowSlots);
+        final Tags statusTags = tags.and("status", status.getCode());
+        FunctionTimer.builder(MybatisMetrics.METRIC_NAME_REQUESTS, histogram, WeightedHistogram::count,
+                        h -> h.totalTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                .description("Sql command latency, every call counted and the latency of sampled calls weighted")
+                .tags(statusTags)
+                .register(registry);
+        for (int i = 0; i < latencySlos.length; i++) {
+            final int bucket = i;
+            Gauge.builder(MybatisMetrics.METRIC_NAME_REQUESTS_BUCKETS, histogram, h -> h.cumulativeCount(bucket))
+                    .description("Sql commands not slower than le seconds, estimated from the sampled calls")
+                    .tags(statusTags)
+                    .tag("le", String.valueOf(latencySlos[i].toNanos() / NANOS_PER_SECOND))
+                    .strongReference(true)
+                    .register(registry);
+        }
+        Gauge.builder(MybatisMetrics.METRIC_NAME_REQUESTS_BUCKETS, histogram, WeightedHistogram::count)
+                .description("Sql commands not slower than le seconds, estimated from the sampled calls")
+                .tags(statusTags)
+                .tag("le", "+Inf")
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder(MybatisMetrics.METRIC_NAME_REQUESTS_MAX, histogram, h -> h.max(System.nanoTime(), TimeUnit.SECONDS))
+                .description("Maximum latency of the sampled sql commands within the window")
+                .baseUnit("seconds")
+                .tags(statusTags)
+                .strongReference(true)
+                .register(registry);
+        return histogram;
+    }
+
+    private Counter localCacheCounter(String result) {
+        return Counter.builder(MybatisMetrics.METRIC_NAME_LOCAL_CACHE_REQUESTS)
+                .description("Session local cache lookups")
+                .tags(tags)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Decide whether the next execution is timed. The interval is read once here and handed
+     * back to {@link #record}, so the weight of a timed call is the interval it was drawn at.
+     * @return the sample interval to time it at and pass to {@link #record}, or 0 to only {@link #count} it
+     */
+    public int sample() {
+        final int interval = sampleInterval;
+        return interval == 1 || ThreadLocalRandom.current().nextInt(interval) == 0 ? interval : 0;
+    }
+
+    /**
+     * Count an execution that was not timed.
+     * @param status the outcome of the execution
+     */
+    public void count(MybatisMetricsStatusEnum status) {
+        sampled[status.ordinal()].recordUntimed();
+    }
+
+    /**
+     * Record one timed execution.
+     * @param status the outcome of the execution
+     * @param startNanos {@link System#nanoTime()} when the execution started
+     * @param endNanos {@link System#nanoTime()} when the execution ended
+     * @param weight the interval {@link #sample()} returned for it
+     */
+    public void record(MybatisMetricsStatusEnum status, long startNanos, long endNanos, int weight) {
+        final int index = status.ordinal();
+        if (rate.isTickDue(endNanos)) {
+            //先结束已过去的 tick，本次执行计入下一个 tick
+            updateRate(endNanos);
+        }
+        if (sampled == null) {
+            timers[index].record(endNanos - startNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        //被采样的调用代表当前采样间隔内的 N 次调用
+        sampled[index].record(endNanos - startNanos, weight, endNanos);
+        adjustSampleInterval(endNanos);
+    }
+
+    /**
+     * Record the latency of one phase; a no-op unless phases are enabled.
+     * @param phase the phase
+     * @param elapsedNanos the time spent in the phase
+     */
+    public void recordPhase(MybatisMetricsPhaseEnum phase, long elapsedNanos) {
+        if (phases != null) {
+            phases[phase.ordinal()].record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Record the number of rows a query returned.
+     * @param rowCount the size of the result list
+     */
+    public void recordRows(int rowCount) {
+        if (rows == null) {
+            return;
+        }
+        rows.record(rowCount);
+        if (largeResultThreshold > 0 && rowCount >= largeResultThreshold) {
+            largeResults.increment();
+        }
+    }
+
+    /**
+     * Record the shape of a prepared sql; a no-op unless parameter shapes are enabled.
+     * @param boundSql the sql about to be prepared
+     */
+    public void recordShape(BoundSql boundSql) {
+        if (parameters == null) {
+            return;
+        }
+        final String sql = boundSql.getSql();
+        parameters.record(boundSql.getParameterMappings().size());
+        sqlLength.record(sql.length());
+        if (shapes != null) {
+            shapes.add(sql);
+        }
+    }
+
+    /**
+     * Record a session-local cache lookup; a no-op unless cache metrics are enabled.
+     * @param hit whether the query was answered from the local cache
+     */
+    public void recordLocalCache(boolean hit) {
+        if (localCacheHits != null) {
+            (hit ? localCacheHits : localCacheMisses).increment();
+        }
+    }
+
+    /**
+     * Record one flushed batch of this statement.
+     * @param updateCounts the update counts of the batch, one per statement
+     */
+    public void recordBatch(int[] updateCounts) {
+        DistributionSummary[] summaries = batch;
+        if (summaries == null) {
+            summaries = new DistributionSummary[] {
+                    DistributionSummary.builder(MybatisMetrics.METRIC_NAME_BATCH_SIZE)
+                            .description("Statements per batch of one mapped statement")
+                            .tags(tags)
+                            .serviceLevelObjectives(rowSlos)
+                            .register(registry),
+                    DistributionSummary.builder(MybatisMetrics.METRIC_NAME_BATCH_UPDATED_ROWS)
+                            .description("Rows updated per batch of one mapped statement")
+                            .tags(tags)
+                            .serviceLevelObjectives(rowSlos)
+                            .register(registry) };
+            batch = summaries;
+        }
+        long rows = 0;
+        for (int updateCount : updateCounts) {
+            //SUCCESS_NO_INFO 等负值表示驱动未返回行数
+            if (updateCount > 0) {
+                rows += updateCount;
+            }
+        }
+        summaries[0].record(updateCounts.length);
+        summaries[1].record(rows);
+    }
+
+    /**
+     * @return the cursor metrics of this statement, registered on first use
+     */
+    public CursorMetrics cursorMetrics() {
+        CursorMetrics metrics = cursor;
+        if (metrics == null) {
+            synchronized (this) {
+                metrics = cursor;
+                if (metrics == null) {
+                    metrics = new CursorMetrics(tags, latencySlos, rowSlos, registry);
+                    cursor = metrics;
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the recorder buffering this statement's executions, or {@code null} to record directly
+     */
+    public AsyncRecorder getRecorder() {
+        return recorder;
+    }
+
+    int getRecorderIndex() {
+        return recorderIndex;
+    }
+
+    void setRecorder(AsyncRecorder recorder, int recorderIndex) {
+        this.recorder = recorder;
+        this.recorderIndex = recorderIndex;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return the tags telling this statement apart from the same id in other configurations or routes
+     */
+    public Tags getExtraTags() {
+        return extraTags;
+    }
+
+    /**
+     * Close the rate ticks that ended by {@code nowNanos}, see {@link StatementRate}.
+     * @param nowNanos {@link System#nanoTime()}
+     * @return the rates
+     */
+    public StatementRate rate(long nowNanos) {
+        updateRate(nowNanos);
+        return rate;
+    }
+
+    private void updateRate(long nowNanos) {
+        long count = 0;
+        double sumNanos = 0;
+        if (sampled != null) {
+            for (WeightedHistogram histogram : sampled) {
+                count += histogram.count();
+                sumNanos += histogram.totalTime(TimeUnit.NANOSECONDS);
+            }
+        } else {
+            for (Timer timer : timers) {
+                count += timer.count();
+                sumNanos += timer.totalTime(TimeUnit.NANOSECONDS);
+            }
+        }
+        rate.update(count, (long) sumNanos, nowNanos);
+    }
+
+    private long totalCalls() {
+        long total = 0;
+        for (WeightedHistogram histogram : sampled) {
+            total += histogram.count();
+        }
+        return total;
+    }
+
+    /**
+     * 每秒最多由一个线程根据观测到的调用速率重新计算采样间隔
+     */
+    private void adjustSampleInterval(long nowNanos) {
+        final long last = lastAdjustNanos.get();
+        final long elapsed = nowNanos - last;
+        if (elapsed < SAMPLING_ADJUST_NANOS || !lastAdjustNanos.compareAndSet(last, nowNanos)) {
+            return;
+        }
+        double total = totalCalls();
+        double rate = (total - lastAdjustCount) * NANOS_PER_SECOND / elapsed;
+        lastAdjustCount = total;
+        sampleInterval = (int) Math.max(1, Math.min(MAX_SAMPLE_INTERVAL, rate / samplingTargetRate));
+    }
+
+}
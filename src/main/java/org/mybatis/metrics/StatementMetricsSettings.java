@@ -0,0 +1,271 @@
+package org.mybatis.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Settings applied when a {@link StatementMetrics} is created, read from the interceptor
+ * properties:
+ * <pre>
+ * maxWindowSeconds=60
+ * maxWindowSlots=6
+ * latencyBuckets=0.005,0.01,0.05,0.1,0.5,1
+ * latencyBuckets.com.example.mapper.ReportMapper.*=0.1,0.5,1,5,10,30
+ * sampling=true
+ * samplingTargetRate=1000
+ * phases=true
+ * rowBuckets=1,10,100,1000,10000,100000
+ * largeResultThreshold=10000
+ * slowQueries=10
+ * slowQueryWindowSeconds=60
+ * cacheMetrics=true
+ * sessionTracking=true
+ * sessionRepeatThreshold=10
+ * parameterShapes=true
+ * sqlShapeLimit=1024
+ * asyncRecording=true
+ * asyncBufferSize=1024
+ * asyncDrainMillis=100
+ * </pre>
+ * When several {@code latencyBuckets.<pattern>} entries match a statement id, the longest
+ * pattern wins; the buckets become the service level objectives of the statement's timers.
+ * With {@code sampling} on, only about {@code samplingTargetRate} calls per second and
+ * statement are timed; {@code mybatis.requests} then still counts every call, its total time
+ * and the cumulative {@code mybatis.requests.buckets} (tag {@code le}) weight each timed call
+ * by the sample interval, and {@code mybatis.requests.max} is the maximum timed. With
+ * {@code phases} on,
+ * {@code StatementHandler} and {@code ResultSetHandler} are intercepted as well and each
+ * phase of a statement gets its own latency histogram. Queries returning at least
+ * {@code largeResultThreshold} rows are counted as large results; 0 disables the counter.
+ * The {@code slowQueries} slowest timed executions of each window are kept for the
+ * actuator endpoint; 0 disables the capture. With {@code cacheMetrics} on, second-level
+ * caches are decorated to count their hits, misses, puts and invalidations when the
+ * configuration is built (see {@link MyBatisInterceptor#instrumentCaches}), and session-local cache hits are
+ * detected by queries that complete without preparing a statement. With
+ * {@code sessionTracking} on, the statements of each {@code SqlSession} transaction are
+ * counted and statement ids repeated more than {@code sessionRepeatThreshold} times flagged.
+ * With {@code parameterShapes} on, the bound parameter count and the length of every SQL
+ * text prepared are recorded, and the distinct texts of dynamic statements counted up to
+ * {@code sqlShapeLimit}. With {@code asyncRecording} on, executions are buffered per thread
+ * and recorded by a background thread every {@code asyncDrainMillis}; see
+ * {@link AsyncRecorder}. Which statements are measured at all is decided by {@link StatementFilter} from the
+ * {@code enabled}, {@code includes} and {@code excludes} properties.
+ *
+ * @author DL.Wan
+ */
+public class StatementMetricsSettings {
+
+    public static final String LATENCY_BUCKETS = "latencyBuckets";
+
+    private static final double[] DEFAULT_ROW_BUCKETS = { 1, 10, 100, 1000, 10000, 100000 };
+
+    private static final double[] SESSION_STATEMENT_BUCKETS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000 };
+
+    private static final double[] PARAMETER_BUCKETS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000 };
+
+    private static final double[] SQL_LENGTH_BUCKETS = { 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000, 100000, 200000, 500000, 1000000 };
+
+    private static final double[] DEFAULT_LATENCY_BUCKETS = { 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    private long maxWindowSeconds = 60;
+    private int maxWindowSlots = 6;
+    private Duration[] latencyBuckets = toDurations(DEFAULT_LATENCY_BUCKETS);
+    private final List<PatternBuckets> patternLatencyBuckets = new ArrayList<>();
+    private boolean sampling = false;
+    private long samplingTargetRate = 1000;
+    private boolean phases = false;
+    private double[] rowBuckets = DEFAULT_ROW_BUCKETS;
+    private long largeResultThreshold = 10000;
+    private int slowQueries = 10;
+    private long slowQueryWindowSeconds = 60;
+    private boolean cacheMetrics = false;
+    private boolean sessionTracking = false;
+    private int sessionRepeatThreshold = 10;
+    private boolean parameterShapes = false;
+    private int sqlShapeLimit = 1024;
+    private boolean asyncRecording = false;
+    private int asyncBufferSize = 1024;
+    private long asyncDrainMillis = 100;
+
+    public static StatementMetricsSettings from(Properties properties) {
+        StatementMetricsSettings settings = new StatementMetricsSettings();
+        settings.maxWindowSeconds = Long.parseLong(properties.getProperty("maxWindowSeconds", String.valueOf(settings.maxWindowSeconds)));
+        settings.maxWindowSlots = Integer.parseInt(properties.getProperty("maxWindowSlots", String.valueOf(settings.maxWindowSlots)));
+        settings.sampling = Boolean.parseBoolean(properties.getProperty("sampling", String.valueOf(settings.sampling)));
+        settings.samplingTargetRate = Long.parseLong(properties.getProperty("samplingTargetRate", String.valueOf(settings.samplingTargetRate)));
+        settings.phases = Boolean.parseBoolean(properties.getProperty("phases", String.valueOf(settings.phases)));
+        settings.largeResultThreshold = Long.parseLong(properties.getProperty("largeResultThreshold", String.valueOf(settings.largeResultThreshold)));
+        settings.slowQueries = Integer.parseInt(properties.getProperty("slowQueries", String.valueOf(settings.slowQueries)));
+        settings.slowQueryWindowSeconds = Long.parseLong(properties.getProperty("slowQueryWindowSeconds", String.valueOf(settings.slowQueryWindowSeconds)));
+        settings.cacheMetrics = Boolean.parseBoolean(properties.getProperty("cacheMetrics", String.valueOf(settings.cacheMetrics)));
+        settings.sessionTracking = Boolean.parseBoolean(properties.getProperty("sessionTracking", String.valueOf(settings.sessionTracking)));
+        settings.sessionRepeatThreshold = Integer.parseInt(properties.getProperty("sessionRepeatThreshold", String.valueOf(settings.sessionRepeatThreshold)));
+        settings.parameterShapes = Boolean.parseBoolean(properties.getProperty("parameterShapes", String.valueOf(settings.parameterShapes)));
+        settings.sqlShapeLimit = Integer.parseInt(properties.getProperty("sqlShapeLimit", String.valueOf(settings.sqlShapeLimit)));
+        settings.asyncRecording = Boolean.parseBoolean(properties.getProperty("asyncRecording", String.valueOf(settings.asyncRecording)));
+        settings.asyncBufferSize = Integer.parseInt(properties.getProperty("asyncBufferSize", String.valueOf(settings.asyncBufferSize)));
+        settings.asyncDrainMillis = Long.parseLong(properties.getProperty("asyncDrainMillis", String.valueOf(settings.asyncDrainMillis)));
+        String rowBuckets = properties.getProperty("rowBuckets");
+        if (rowBuckets != null) {
+            settings.rowBuckets = Arrays.stream(rowBuckets.split(","))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .mapToDouble(Double::parseDouble)
+                    .sorted()
+                    .distinct()
+                    .toArray();
+        }
+        String prefix = LATENCY_BUCKETS + ".";
+        for (String name : properties.stringPropertyNames()) {
+            if (name.equals(LATENCY_BUCKETS)) {
+                settings.latencyBuckets = parseBuckets(properties.getProperty(name));
+            } else if (name.startsWith(prefix)) {
+                String glob = name.substring(prefix.length());
+                settings.patternLatencyBuckets.add(new PatternBuckets(glob, parseBuckets(properties.getProperty(name))));
+            }
+        }
+        settings.patternLatencyBuckets.sort(Comparator.comparingInt((PatternBuckets p) -> p.glob.length()).reversed());
+        return settings;
+    }
+
+    public long getMaxWindowSeconds() {
+        return maxWindowSeconds;
+    }
+
+    public int getMaxWindowSlots() {
+        return maxWindowSlots;
+    }
+
+    public boolean isSampling() {
+        return sampling;
+    }
+
+    public long getSamplingTargetRate() {
+        return samplingTargetRate;
+    }
+
+    public boolean isPhases() {
+        return phases;
+    }
+
+    /**
+     * @return the default latency buckets
+     */
+    public Duration[] getLatencySlos() {
+        return latencyBuckets;
+    }
+
+    /**
+     * @return the row count buckets
+     */
+    public double[] getRowSlos() {
+        return rowBuckets;
+    }
+
+    public long getLargeResultThreshold() {
+        return largeResultThreshold;
+    }
+
+    public int getSlowQueries() {
+        return slowQueries;
+    }
+
+    public long getSlowQueryWindowSeconds() {
+        return slowQueryWindowSeconds;
+    }
+
+    public boolean isCacheMetrics() {
+        return cacheMetrics;
+    }
+
+    public boolean isSessionTracking() {
+        return sessionTracking;
+    }
+
+    public int getSessionRepeatThreshold() {
+        return sessionRepeatThreshold;
+    }
+
+    public double[] getSessionStatementSlos() {
+        return SESSION_STATEMENT_BUCKETS;
+    }
+
+    public boolean isParameterShapes() {
+        return parameterShapes;
+    }
+
+    public int getSqlShapeLimit() {
+        return sqlShapeLimit;
+    }
+
+    public boolean isAsyncRecording() {
+        return asyncRecording;
+    }
+
+    public int getAsyncBufferSize() {
+        return asyncBufferSize;
+    }
+
+    public long getAsyncDrainMillis() {
+        return asyncDrainMillis;
+    }
+
+    public double[] getParameterSlos() {
+        return PARAMETER_BUCKETS;
+    }
+
+    public double[] getSqlLengthSlos() {
+        return SQL_LENGTH_BUCKETS;
+    }
+
+    /**
+     * @param statementId the {@code MappedStatement} id
+     * @return the latency buckets of that statement
+     */
+    public Duration[] latencySlosFor(String statementId) {
+        for (PatternBuckets patternBuckets : patternLatencyBuckets) {
+            if (patternBuckets.pattern.matcher(statementId).matches()) {
+                return patternBuckets.buckets;
+            }
+        }
+        return latencyBuckets;
+    }
+
+    private static Duration[] parseBuckets(String value) {
+        return toDurations(Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .mapToDouble(Double::parseDouble)
+                .toArray());
+    }
+
+    private static Duration[] toDurations(double[] seconds) {
+        return Arrays.stream(seconds)
+                .mapToLong(s -> (long) (s * TimeUnit.SECONDS.toNanos(1)))
+                .sorted()
+                .distinct()
+                .mapToObj(Duration::ofNanos)
+                .toArray(Duration[]::new);
+    }
+
+    private static class PatternBuckets {
+
+        private final String glob;
+        private final Pattern pattern;
+        private final Duration[] buckets;
+
+        PatternBuckets(String glob, Duration[] buckets) {
+            this.glob = glob;
+            this.pattern = StatementPatterns.compile(glob);
+            this.buckets = buckets;
+        }
+
+    }
+
+}
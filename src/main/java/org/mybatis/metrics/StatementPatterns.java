@@ -0,0 +1,36 @@
+package org.mybatis.metrics;
+
+import java.util.regex.Pattern;
+
+/**
+ * Glob patterns over {@code MappedStatement} ids: {@code *} matches any run of characters
+ * and {@code ?} a single character, e.g. {@code com.example.mapper.UserMapper.select*}.
+ *
+ * @author DL.Wan
+ */
+public final class StatementPatterns {
+
+    private StatementPatterns() {
+    }
+
+    public static Pattern compile(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        StringBuilder literal = new StringBuilder();
+        for (char c : glob.trim().toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+}
@@ -0,0 +1,122 @@
+package org.mybatis.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponentially weighted call rate and time rate of one statement, kept from its cumulative
+ * call count and latency sum.
+ * <p>
+ * The averages tick on a fixed grid every {@value #TICK_SECONDS} seconds from the creation
+ * of the statement, with a one minute time constant. The first timed execution after a grid
+ * boundary closes the tick, before it is recorded itself, which costs one volatile read per
+ * execution otherwise; a read closes the ticks of an idle statement. When every execution is
+ * timed, all growth since the last closed tick belongs to the first tick being closed, since
+ * any execution after its end would have closed it, and the ticks after it only decay. When
+ * sampled-out executions are only counted they close no tick, so the growth is spread evenly
+ * over all the ticks being closed instead. Both are applied in closed form.
+ *
+ * @author DL.Wan
+ */
+public class StatementRate {
+
+    static final int TICK_SECONDS = 5;
+
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(TICK_SECONDS);
+    private static final double ALPHA = 1 - Math.exp(-TICK_SECONDS / 60D);
+
+    /**
+     * 下一个 tick 边界，热路径只读取该字段
+     */
+    private volatile long nextTickNanos;
+    /**
+     * 存在不检查 tick 边界的调用（采样时只计数的调用）
+     */
+    private final boolean untimedCalls;
+    private long lastTickNanos;
+    private long lastCount;
+    private long lastSumNanos;
+    private boolean initialized;
+    private double callsPerSecond;
+    private double nanosPerSecond;
+
+    /**
+     * @param startNanos {@link System#nanoTime()} from which executions are counted
+     * @param untimedCalls whether some executions are counted without closing ticks
+     */
+    public StatementRate(long startNanos, boolean untimedCalls) {
+        this.untimedCalls = untimedCalls;
+        this.lastTickNanos = startNanos;
+        this.nextTickNanos = startNanos + TICK_NANOS;
+    }
+
+    /**
+     * @param nowNanos {@link System#nanoTime()}
+     * @return whether a grid boundary has passed since the last closed tick
+     */
+    public boolean isTickDue(long nowNanos) {
+        return nowNanos - nextTickNanos >= 0;
+    }
+
+    /**
+     * Close the ticks that ended by {@code nowNanos}; a no-op if none did.
+     * @param count the cumulative call count
+     * @param sumNanos the cumulative execution time
+     * @param nowNanos {@link System#nanoTime()}
+     */
+    public synchronized void update(long count, long sumNanos, long nowNanos) {
+        final long ticks = (nowNanos - lastTickNanos) / TICK_NANOS;
+        if (ticks <= 0) {
+            return;
+        }
+        if (untimedCalls) {
+            //增量无法归属到具体 tick，按每个 tick 相同的速率推进：x_n = r + (x_0 - r)(1-α)^n
+            final double calls = (double) (count - lastCount) / (ticks * TICK_SECONDS);
+            final double nanos = (double) (sumNanos - lastSumNanos) / (ticks * TICK_SECONDS);
+            if (initialized) {
+                final double decay = Math.pow(1 - ALPHA, ticks);
+                callsPerSecond = calls + (callsPerSecond - calls) * decay;
+                nanosPerSecond = nanos + (nanosPerSecond - nanos) * decay;
+            } else {
+                callsPerSecond = calls;
+                nanosPerSecond = nanos;
+                initialized = true;
+            }
+        } else {
+            final double calls = (double) (count - lastCount) / TICK_SECONDS;
+            final double nanos = (double) (sumNanos - lastSumNanos) / TICK_SECONDS;
+            if (initialized) {
+                callsPerSecond += ALPHA * (calls - callsPerSecond);
+                nanosPerSecond += ALPHA * (nanos - nanosPerSecond);
+            } else {
+                callsPerSecond = calls;
+                nanosPerSecond = nanos;
+                initialized = true;
+            }
+            if (ticks > 1) {
+                //其余 tick 内没有执行，只衰减
+                final double decay = Math.pow(1 - ALPHA, ticks - 1);
+                callsPerSecond *= decay;
+                nanosPerSecond *= decay;
+            }
+        }
+        lastTickNanos += ticks * TICK_NANOS;
+        nextTickNanos = lastTickNanos + TICK_NANOS;
+        lastCount = count;
+        lastSumNanos = sumNanos;
+    }
+
+    /**
+     * @return the weighted calls per second
+     */
+    public synchronized double getCallsPerSecond() {
+        return callsPerSecond;
+    }
+
+    /**
+     * @return the weighted execution time per second, in nanoseconds
+     */
+    public synchronized double getNanosPerSecond() {
+        return nanosPerSecond;
+    }
+
+}
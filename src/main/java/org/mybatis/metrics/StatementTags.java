@@ -0,0 +1,86 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Tags;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Tags that tell apart the statements of different {@link Configuration}s, such as the
+ * {@code SqlSessionFactory} and data source they belong to, and the routing key of a
+ * configuration whose data source routes each call to one of several targets.
+ * <p>
+ * The interceptors look both up when they first meet a statement, or a statement and
+ * routing key, and keep the tagged meters, so tagging adds no lookup per call. A
+ * configuration that was not registered gets the same tag keys with {@value #UNKNOWN}
+ * values, since registries such as Prometheus reject one meter name under differing keys.
+ *
+ * @author DL.Wan
+ */
+public class StatementTags {
+
+    public static final String FACTORY = "factory";
+    public static final String DATASOURCE = "datasource";
+
+    /**
+     * 路由键为 null 时（使用默认数据源）的标签值
+     */
+    public static final String DEFAULT_ROUTE = "default";
+
+    /**
+     * 未注册的 Configuration 的标签值
+     */
+    public static final String UNKNOWN = "unknown";
+
+    private static final Tags UNKNOWN_TAGS = Tags.of(FACTORY, UNKNOWN, DATASOURCE, UNKNOWN);
+
+    /**
+     * Configuration 不重写 equals/hashCode，因此按实例保存
+     */
+    private final ConcurrentMap<Configuration, Tags> tags = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Configuration, Supplier<?>> routingKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Register the tags of a configuration; must happen before its first statement executes.
+     * @param configuration the configuration
+     * @param configurationTags the tags of its statements
+     * @param routingKey returns the routing key of the current call, tagged as
+     *                   {@code datasource}; {@code null} if the data source does not route
+     */
+    public void register(Configuration configuration, Tags configurationTags, Supplier<?> routingKey) {
+        tags.put(configuration, configurationTags);
+        if (routingKey != null) {
+            routingKeys.put(configuration, routingKey);
+        } else {
+            routingKeys.remove(configuration);
+        }
+    }
+
+    /**
+     * @param configuration the configuration
+     * @return its tags, {@value #UNKNOWN} ones if it was not registered
+     */
+    public Tags tagsOf(Configuration configuration) {
+        return tags.getOrDefault(configuration, UNKNOWN_TAGS);
+    }
+
+    /**
+     * @param configuration the configuration
+     * @return its routing key supplier, or {@code null}
+     */
+    public Supplier<?> routingKeyOf(Configuration configuration) {
+        return routingKeys.get(configuration);
+    }
+
+    /**
+     * @param configurationTags the tags of the configuration
+     * @param routingKey the routing key of the call, may be {@code null}
+     * @return the tags of the statements executed under that key
+     */
+    public static Tags withRoute(Tags configurationTags, Object routingKey) {
+        return configurationTags.and(DATASOURCE, routingKey != null ? String.valueOf(routingKey) : DEFAULT_ROUTE);
+    }
+
+}
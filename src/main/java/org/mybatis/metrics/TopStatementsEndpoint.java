@@ -0,0 +1,124 @@
+package org.mybatis.metrics;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * {@code /actuator/mybatistopstatements}：按当前总耗时（指数加权）排序的前 N 条语句
+ *
+ * @author DL.Wan
+ */
+@Endpoint(id = "mybatistopstatements")
+public class TopStatementsEndpoint {
+
+	private static final int DEFAULT_LIMIT = 10;
+
+	private final ObjectProvider<SqlSessionFactory> sqlSessionFactories;
+
+	public TopStatementsEndpoint(ObjectProvider<SqlSessionFactory> sqlSessionFactories) {
+		this.sqlSessionFactories = sqlSessionFactories;
+	}
+
+	@ReadOperation
+	public List<StatementDescriptor> topStatements(@Nullable Integer limit) {
+		long now = System.nanoTime();
+		Set<String> seen = new HashSet<>();
+		List<StatementDescriptor> statements = new ArrayList<>();
+		double totalNanosPerSecond = 0;
+		for (MyBatisInterceptor interceptor : SqlSessionFactories.interceptors(sqlSessionFactories, MyBatisInterceptor.class)) {
+			for (StatementMetrics metrics : interceptor.getStatementMetrics()) {
+				// 标签相同的同名语句共用同一组 Timer，只计一次
+				if (!seen.add(metrics.getId() + metrics.getExtraTags())) {
+					continue;
+				}
+				StatementRate rate = metrics.rate(now);
+				Map<String, String> tags = new LinkedHashMap<>();
+				metrics.getExtraTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+				StatementDescriptor statement = new StatementDescriptor(metrics.getId(), metrics.getCommand(), tags,
+						rate.getCallsPerSecond(), rate.getNanosPerSecond());
+				totalNanosPerSecond += statement.nanosPerSecond;
+				statements.add(statement);
+			}
+		}
+		for (StatementDescriptor statement : statements) {
+			statement.timeShare = totalNanosPerSecond > 0 ? statement.nanosPerSecond / totalNanosPerSecond : 0;
+		}
+		return statements.stream()
+				.sorted(Comparator.comparingDouble((StatementDescriptor s) -> s.nanosPerSecond).reversed())
+				.limit(limit != null ? limit : DEFAULT_LIMIT)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Weighted aggregates of one statement.
+	 */
+	public static final class StatementDescriptor {
+
+		private final String id;
+		private final String command;
+		private final Map<String, String> tags;
+		private final double callsPerSecond;
+		private final double nanosPerSecond;
+		private double timeShare;
+
+		private StatementDescriptor(String id, String command, Map<String, String> tags, double callsPerSecond,
+				double nanosPerSecond) {
+			this.id = id;
+			this.command = command;
+			this.tags = tags;
+			this.callsPerSecond = callsPerSecond;
+			this.nanosPerSecond = nanosPerSecond;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getCommand() {
+			return command;
+		}
+
+		/**
+		 * @return the factory and data source tags of the statement, empty if there are none
+		 */
+		public Map<String, String> getTags() {
+			return tags;
+		}
+
+		public double getCallsPerSecond() {
+			return callsPerSecond;
+		}
+
+		public double getMeanLatencyMillis() {
+			return callsPerSecond > 0 ? nanosPerSecond / callsPerSecond / 1_000_000D : 0;
+		}
+
+		/**
+		 * @return seconds of execution time per second, i.e. the average number of executions in flight
+		 */
+		public double getTimePerSecond() {
+			return nanosPerSecond / 1_000_000_000D;
+		}
+
+		/**
+		 * @return this statement's share of the total execution time, between 0 and 1
+		 */
+		public double getTimeShare() {
+			return timeShare;
+		}
+
+	}
+
+}
@@ -0,0 +1,128 @@
+package org.mybatis.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram of one status of a sampled statement. Every call is counted exactly; a
+ * timed call adds its latency to the sum and one to its bucket, both weighted by the sample
+ * interval it was drawn at, so that sum and buckets estimate all calls rather than the timed
+ * ones. The maximum is that of the timed calls within a sliding window, kept to the microsecond.
+ * <p>
+ * The cumulative bucket counts are clamped to the exact count, so they never exceed the
+ * {@code +Inf} bucket however the random draws fall.
+ *
+ * @author DL.Wan
+ */
+public class WeightedHistogram {
+
+    private final long[] boundNanos;
+    /**
+     * 按上界分桶（非累计），超过最大上界的调用只计入 count
+     */
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    /**
+     * 以微秒记录（向上取整），WindowedMax 的 32 位取值可容纳约 71 分钟
+     */
+    private final WindowedMax maxMicros;
+
+    /**
+     * @param bounds the upper bounds of the buckets, ascending
+     * @param window the window of the maximum
+     * @param unit the unit of {@code window}
+     * @param slotCount number of slots the window is divided into
+     */
+    public WeightedHistogram(Duration[] bounds, long window, TimeUnit unit, int slotCount) {
+        this.boundNanos = new long[bounds.length];
+        this.buckets = new LongAdder[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            boundNanos[i] = bounds[i].toNanos();
+            buckets[i] = new LongAdder();
+        }
+        this.maxMicros = new WindowedMax(window, unit, slotCount);
+    }
+
+    /**
+     * Count a call that was not timed.
+     */
+    public void recordUntimed() {
+        count.increment();
+    }
+
+    /**
+     * Record a timed call.
+     * @param nanos the latency
+     * @param weight the number of calls it stands for, i.e. the sample interval
+     * @param nowNanos {@link System#nanoTime()}
+     */
+    public void record(long nanos, int weight, long nowNanos) {
+        count.increment();
+        sumNanos.add(nanos * weight);
+        final int bucket = bucketOf(nanos);
+        if (bucket < buckets.length) {
+            buckets[bucket].add(weight);
+        }
+        maxMicros.record((nanos + 999) / 1000, nowNanos);
+    }
+
+    /**
+     * @return the number of calls, timed or not
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @param unit the unit to return
+     * @return the estimated total latency of all calls
+     */
+    public double totalTime(TimeUnit unit) {
+        return (double) sumNanos.sum() / unit.toNanos(1);
+    }
+
+    /**
+     * @return the number of buckets, excluding {@code +Inf}
+     */
+    public int bucketCount() {
+        return buckets.length;
+    }
+
+    /**
+     * @param bucket the index of a bucket
+     * @return the estimated number of calls not slower than its upper bound
+     */
+    public double cumulativeCount(int bucket) {
+        long cumulative = 0;
+        for (int i = 0; i <= bucket; i++) {
+            cumulative += buckets[i].sum();
+        }
+        return Math.min(cumulative, count.sum());
+    }
+
+    /**
+     * @param nowNanos {@link System#nanoTime()}
+     * @param unit the unit to return
+     * @return the maximum latency timed within the window
+     */
+    public double max(long nowNanos, TimeUnit unit) {
+        return (double) TimeUnit.MICROSECONDS.toNanos(maxMicros.get(nowNanos)) / unit.toNanos(1);
+    }
+
+    private int bucketOf(long nanos) {
+        int low = 0;
+        int high = boundNanos.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (boundNanos[mid] < nanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.mybatis.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decaying maximum over a sliding window made of rotating time slots.
+ * <p>
+ * Every slot packs the slot epoch (low 32 bits) and the slot maximum (high 32 bits, values
+ * above {@link #MAX_VALUE} are clamped) into one {@code long}, so rolling a slot over and
+ * raising its maximum are the same single CAS: concurrent writers never lose a peak to a
+ * reset, and a writer whose value is not a new maximum returns after one volatile read.
+ * <p>
+ * Epochs are compared as 32-bit serial numbers, which is exact while the epochs compared lie
+ * less than {@code 2^31} slots apart, i.e. for decades at any slot length of a millisecond or more.
+ *
+ * @author DL.Wan
+ */
+public class WindowedMax {
+
+    /**
+     * The largest value kept; larger values are recorded as this one.
+     */
+    public static final long MAX_VALUE = 0xFFFFFFFFL;
+
+    private static final int TAG_BITS = 32;
+    private static final long TAG_MASK = 0xFFFFFFFFL;
+
+    private final AtomicLongArray slots;
+    private final long slotNanos;
+
+    /**
+     * @param window the window length
+     * @param unit the unit of {@code window}
+     * @param slotCount number of slots the window is divided into
+     */
+    public WindowedMax(long window, TimeUnit unit, int slotCount) {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("slotCount must be positive: " + slotCount);
+        }
+        this.slots = new AtomicLongArray(slotCount);
+        this.slotNanos = Math.max(1L, unit.toNanos(window) / slotCount);
+    }
+
+    /**
+     * Record a value observed at {@code nowNanos} ({@link System#nanoTime()} clock).
+     * @param value the value, negative values are ignored
+     * @param nowNanos the current time
+     */
+    public void record(long value, long nowNanos) {
+        if (value <= 0) {
+            return;
+        }
+        final long epoch = Math.floorDiv(nowNanos, slotNanos);
+        final long tag = epoch & TAG_MASK;
+        final int index = (int) Math.floorMod(epoch, (long) slots.length());
+        final long clamped = Math.min(value, MAX_VALUE);
+        final long packed = (clamped << TAG_BITS) | tag;
+        for (;;) {
+            long current = slots.get(index);
+            long currentTag = current & TAG_MASK;
+            if (currentTag == tag) {
+                if ((current >>> TAG_BITS) >= clamped) {
+                    return;
+                }
+            } else if ((int) (currentTag - tag) > 0) {
+                // 该槽已被更新的时间片占用，本次观测已过期
+                return;
+            }
+            if (slots.compareAndSet(index, current, packed)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param nowNanos the current time ({@link System#nanoTime()} clock)
+     * @return the maximum recorded within the window ending at {@code nowNanos}, or 0
+     */
+    public long get(long nowNanos) {
+        final long epoch = Math.floorDiv(nowNanos, slotNanos);
+        final int slotCount = slots.length();
+        long max = 0;
+        for (int i = 0; i < slotCount; i++) {
+            long slotEpoch = epoch - i;
+            long current = slots.get((int) Math.floorMod(slotEpoch, (long) slotCount));
+            if ((current & TAG_MASK) == (slotEpoch & TAG_MASK)) {
+                max = Math.max(max, current >>> TAG_BITS);
+            }
+        }
+        return max;
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.search.RequiredSearch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AsyncRecorderTest {
+
+    /**
+     * 测试期间后台线程不会自行 drain
+     */
+    private static final long NEVER_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private Configuration configuration;
+    private AsyncRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        configuration = H2Configurations.create();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
+    @Test
+    void bufferedExecutionsAreRecordedOnFlush() {
+        StatementMetrics metrics = registeredMetrics(1024);
+        recorder.record(metrics, MybatisMetricsStatusEnum.success, 1000, 1);
+        recorder.record(metrics, MybatisMetricsStatusEnum.success, 2000, 1);
+        assertEquals(0, requests().timer().count());
+
+        recorder.flush();
+        assertEquals(2, requests().timer().count());
+        assertEquals(3000, requests().timer().totalTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void readingThePendingGaugeDrains() {
+        StatementMetrics metrics = registeredMetrics(1024);
+        recorder.record(metrics, MybatisMetricsStatusEnum.success, 1000, 1);
+
+        assertEquals(0, registry.get(MybatisMetrics.METRIC_NAME_ASYNC_PENDING).gauge().value());
+        assertEquals(1, requests().timer().count());
+    }
+
+    @Test
+    void fullRingDropsAndCounts() {
+        StatementMetrics metrics = registeredMetrics(2);
+        for (int i = 0; i < 3; i++) {
+            recorder.record(metrics, MybatisMetricsStatusEnum.success, 1000, 1);
+        }
+        recorder.flush();
+
+        assertEquals(2, requests().timer().count());
+        assertEquals(1, registry.get(MybatisMetrics.METRIC_NAME_ASYNC_DROPPED).functionCounter().count());
+    }
+
+    @Test
+    void sampleWeightSurvivesBuffering() {
+        StatementMetrics metrics = registeredMetrics(1024, "sampling=true");
+        recorder.record(metrics, MybatisMetricsStatusEnum.success, 1000, 7);
+        recorder.count(metrics, MybatisMetricsStatusEnum.success);
+        recorder.flush();
+
+        assertEquals(2, requests().functionTimer().count());
+        assertEquals(7000, requests().functionTimer().totalTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void closeRecordsBufferedAndRemovesOwnMeters() {
+        StatementMetrics metrics = registeredMetrics(1024);
+        recorder.record(metrics, MybatisMetricsStatusEnum.success, 1000, 1);
+        recorder.close();
+        assertEquals(1, requests().timer().count());
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_ASYNC_PENDING).gauge());
+
+        //停止后直接记录
+        recorder.record(metrics, MybatisMetricsStatusEnum.success, 1000, 1);
+        assertEquals(2, requests().timer().count());
+        recorder = null;
+    }
+
+    @Test
+    void interceptorBuffersAndFlushesOnRead() {
+        MyBatisInterceptor interceptor = H2Configurations.addInterceptor(configuration, registry,
+                "asyncRecording=true", "asyncDrainMillis=" + NEVER_MILLIS);
+        SqlSessionFactory sessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+        try (SqlSession session = sessionFactory.openSession()) {
+            ItemMapper mapper = session.getMapper(ItemMapper.class);
+            for (int i = 0; i < 3; i++) {
+                mapper.findName(1);
+            }
+        }
+        assertEquals(1, interceptor.getStatementMetrics().size());
+        assertEquals(3, requests().timer().count());
+    }
+
+    private StatementMetrics registeredMetrics(int ringCapacity, String... properties) {
+        StatementMetricsSettings settings = StatementMetricsSettings.from(H2Configurations.properties(properties));
+        StatementMetrics metrics = new StatementMetrics(configuration.getMappedStatement(ItemMapper.FIND_NAME), settings,
+                registry, Tags.empty());
+        recorder = new AsyncRecorder(ringCapacity, NEVER_MILLIS, TimeUnit.MILLISECONDS, registry, Tags.empty());
+        recorder.register(metrics);
+        return metrics;
+    }
+
+    private RequiredSearch requests() {
+        return registry.get(MybatisMetrics.METRIC_NAME_REQUESTS)
+                .tag("class", ItemMapper.FIND_NAME)
+                .tag("status", MybatisMetricsStatusEnum.success.getCode());
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BatchMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SqlSessionFactory sessionFactory;
+
+    @BeforeEach
+    void setUp() {
+        Configuration configuration = H2Configurations.create();
+        H2Configurations.addInterceptor(configuration, registry);
+        sessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @Test
+    void commitFlushesTheBatchThroughTheInterceptor() {
+        try (SqlSession session = sessionFactory.openSession(ExecutorType.BATCH)) {
+            ItemMapper mapper = session.getMapper(ItemMapper.class);
+            mapper.insert(10, "x");
+            mapper.insert(11, "y");
+            session.commit();
+        }
+        assertFlushed(1, 2);
+        assertEquals(1, registry.get(MybatisMetrics.METRIC_NAME_BATCH_SIZE).tag("class", ItemMapper.INSERT).summary().count());
+        assertEquals(2, registry.get(MybatisMetrics.METRIC_NAME_BATCH_SIZE).tag("class", ItemMapper.INSERT).summary().totalAmount());
+        assertEquals(2, registry.get(MybatisMetrics.METRIC_NAME_BATCH_UPDATED_ROWS).tag("class", ItemMapper.INSERT).summary().totalAmount());
+    }
+
+    @Test
+    void explicitFlushIsNotCountedAgainOnCommit() {
+        try (SqlSession session = sessionFactory.openSession(ExecutorType.BATCH)) {
+            session.getMapper(ItemMapper.class).insert(10, "x");
+            List<BatchResult> results = session.flushStatements();
+            assertEquals(1, results.size());
+            session.commit();
+        }
+        assertFlushed(1, 1);
+    }
+
+    @Test
+    void simpleExecutorRecordsNoFlush() {
+        try (SqlSession session = sessionFactory.openSession()) {
+            session.getMapper(ItemMapper.class).insert(10, "x");
+            session.commit();
+        }
+        assertEquals(0, registry.get(MybatisMetrics.METRIC_NAME_FLUSH_STATEMENTS).summary().count());
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_BATCH_SIZE).summary());
+    }
+
+    private void assertFlushed(long flushes, double statements) {
+        assertEquals(flushes, registry.get(MybatisMetrics.METRIC_NAME_FLUSH)
+                .tag("status", MybatisMetricsStatusEnum.success.getCode())
+                .timer()
+                .count());
+        assertEquals(flushes, registry.get(MybatisMetrics.METRIC_NAME_FLUSH_STATEMENTS).summary().count());
+        assertEquals(statements, registry.get(MybatisMetrics.METRIC_NAME_FLUSH_STATEMENTS).summary().totalAmount());
+    }
+
+}
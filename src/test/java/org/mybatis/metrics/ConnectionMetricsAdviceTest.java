@@ -0,0 +1,71 @@
+package org.mybatis.metrics;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.DruidPooledConnection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ConnectionMetricsAdviceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void timesAcquireAndHoldOfInterfaceTypedConnections() throws Exception {
+        UnpooledDataSource dataSource = (UnpooledDataSource) proxy(
+                new UnpooledDataSource("org.h2.Driver", "jdbc:h2:mem:advice;DB_CLOSE_DELAY=-1", "sa", ""), "unpooled");
+        Connection connection = dataSource.getConnection();
+        assertEquals(0, holdCount("unpooled"));
+        connection.close();
+        connection.close();
+        assertEquals(1, acquireCount("unpooled"));
+        assertEquals(1, holdCount("unpooled"));
+    }
+
+    @Test
+    void onlyTimesAcquireOfClassTypedConnections() throws Exception {
+        DruidDataSource target = new DruidDataSource();
+        target.setUrl("jdbc:h2:mem:druid;DB_CLOSE_DELAY=-1");
+        target.setUsername("sa");
+        try {
+            DruidDataSource dataSource = (DruidDataSource) proxy(target, "druid");
+            DruidPooledConnection connection = dataSource.getConnection();
+            assertSame(DruidPooledConnection.class, connection.getClass());
+            connection.close();
+            assertEquals(1, acquireCount("druid"));
+            assertEquals(0, holdCount("druid"));
+        } finally {
+            target.close();
+        }
+    }
+
+    private Object proxy(Object dataSource, String beanName) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("registry", registry);
+        return new DataSourceMetricsPostProcessor(beanFactory.getBeanProvider(MeterRegistry.class),
+                Collections.singletonList(Duration.ofMillis(10)), Collections.emptySet())
+                .postProcessAfterInitialization(dataSource, beanName);
+    }
+
+    private long acquireCount(String dataSource) {
+        return registry.get(ConnectionMetricsAdvice.METRIC_NAME_ACQUIRE)
+                .tag("datasource", dataSource)
+                .tag("status", MybatisMetricsStatusEnum.success.getCode())
+                .timer()
+                .count();
+    }
+
+    private long holdCount(String dataSource) {
+        return registry.get(ConnectionMetricsAdvice.METRIC_NAME_HOLD).tag("datasource", dataSource).timer().count();
+    }
+
+}
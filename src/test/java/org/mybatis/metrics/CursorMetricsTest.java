@@ -0,0 +1,78 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.search.RequiredSearch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CursorMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SqlSessionFactory sessionFactory;
+
+    @BeforeEach
+    void setUp() {
+        Configuration configuration = H2Configurations.create();
+        H2Configurations.addInterceptor(configuration, registry);
+        sessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @Test
+    void recordsACursorReadToTheEnd() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        try (SqlSession session = sessionFactory.openSession();
+             Cursor<Integer> cursor = session.getMapper(ItemMapper.class).cursorIds()) {
+            assertEquals(1.0, meter(MybatisMetrics.METRIC_NAME_CURSOR_OPEN).gauge().value());
+            cursor.forEach(ids::add);
+            assertEquals(0.0, meter(MybatisMetrics.METRIC_NAME_CURSOR_OPEN).gauge().value());
+        }
+        assertEquals(Arrays.asList(1, 2, 3), ids);
+        assertEquals(1, meter(MybatisMetrics.METRIC_NAME_CURSOR_FIRST_ROW).timer().count());
+        assertEquals(1, meter(MybatisMetrics.METRIC_NAME_CURSOR_DURATION).timer().count());
+        assertEquals(3, meter(MybatisMetrics.METRIC_NAME_CURSOR_ROWS).summary().totalAmount());
+        assertEquals(0, meter(MybatisMetrics.METRIC_NAME_CURSOR_ABANDONED).counter().count());
+        //游标查询不计入 requests
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_REQUESTS).tag("class", ItemMapper.CURSOR_IDS).timer());
+    }
+
+    @Test
+    void countsACursorClosedEarlyAsAbandoned() throws Exception {
+        try (SqlSession session = sessionFactory.openSession();
+             Cursor<Integer> cursor = session.getMapper(ItemMapper.class).cursorIds()) {
+            Iterator<Integer> iterator = cursor.iterator();
+            assertEquals(1, (int) iterator.next());
+        }
+        assertEquals(1, meter(MybatisMetrics.METRIC_NAME_CURSOR_ROWS).summary().totalAmount());
+        assertEquals(1, meter(MybatisMetrics.METRIC_NAME_CURSOR_ABANDONED).counter().count());
+        assertEquals(1, meter(MybatisMetrics.METRIC_NAME_CURSOR_DURATION).timer().count());
+        assertEquals(0.0, meter(MybatisMetrics.METRIC_NAME_CURSOR_OPEN).gauge().value());
+    }
+
+    @Test
+    void countsACursorLeftOpenUntilSessionCloseAsAbandoned() {
+        try (SqlSession session = sessionFactory.openSession()) {
+            session.getMapper(ItemMapper.class).cursorIds();
+        }
+        assertEquals(0, meter(MybatisMetrics.METRIC_NAME_CURSOR_FIRST_ROW).timer().count());
+        assertEquals(1, meter(MybatisMetrics.METRIC_NAME_CURSOR_ABANDONED).counter().count());
+        assertEquals(0.0, meter(MybatisMetrics.METRIC_NAME_CURSOR_OPEN).gauge().value());
+    }
+
+    private RequiredSearch meter(String name) {
+        return registry.get(name).tag("class", ItemMapper.CURSOR_IDS);
+    }
+
+}
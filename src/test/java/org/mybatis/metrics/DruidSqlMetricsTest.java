@@ -0,0 +1,88 @@
+package org.mybatis.metrics;
+
+import com.alibaba.druid.stat.JdbcDataSourceStat;
+import com.alibaba.druid.stat.JdbcSqlStat;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DruidSqlMetricsTest {
+
+    private static final String HEAVY = "select * from item where id = ?";
+    private static final String LIGHT = "select name from item";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JdbcDataSourceStat dsStats = new JdbcDataSourceStat("test", "jdbc:h2:mem:test");
+
+    @Test
+    void unboundedExportsEverySqlLabelledWithItsText() {
+        execute(HEAVY, 2);
+        DruidSqlMetrics metrics = metrics(0);
+        metrics.bind();
+        assertEquals(2, executeCount(HEAVY));
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_COUNT).tag("sql", DruidSqlMetrics.OTHER).gauge());
+
+        execute(LIGHT, 1);
+        metrics.refresh();
+        assertEquals(1, executeCount(LIGHT));
+    }
+
+    @Test
+    void topKExportsTheHeaviestByHashAndFoldsTheRestIntoOther() {
+        execute(HEAVY, 5);
+        execute(LIGHT, 1);
+        metrics(1).bind();
+
+        assertEquals(5, executeCount(DruidSqlMetrics.hash(HEAVY)));
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_COUNT).tag("sql", DruidSqlMetrics.hash(LIGHT)).gauge());
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_COUNT).tag("sql", HEAVY).gauge());
+        assertEquals(1, executeCount(DruidSqlMetrics.OTHER));
+    }
+
+    @Test
+    void refreshMovesTheSeriesWhenTheRankingChanges() {
+        JdbcSqlStat light = execute(LIGHT, 1);
+        execute(HEAVY, 5);
+        DruidSqlMetrics metrics = metrics(1);
+        metrics.bind();
+
+        for (int i = 0; i < 10; i++) {
+            light.incrementExecuteSuccessCount();
+        }
+        metrics.refresh();
+
+        assertEquals(11, executeCount(DruidSqlMetrics.hash(LIGHT)));
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_COUNT).tag("sql", DruidSqlMetrics.hash(HEAVY)).gauge());
+        assertEquals(5, executeCount(DruidSqlMetrics.OTHER));
+    }
+
+    @Test
+    void hashIsFnv1a() {
+        assertEquals("cbf29ce484222325", DruidSqlMetrics.hash(""));
+        assertEquals("af63dc4c8601ec8c", DruidSqlMetrics.hash("a"));
+        assertEquals(DruidSqlMetrics.hash(HEAVY), DruidSqlMetrics.hash(HEAVY));
+    }
+
+    private DruidSqlMetrics metrics(int topK) {
+        return new DruidSqlMetrics(registry, dsStats, Collections.singletonList(Tag.of("datasource", "test")), topK,
+                MybatisMetricsProperties.SqlRankBy.EXECUTE_COUNT);
+    }
+
+    private JdbcSqlStat execute(String sql, int times) {
+        JdbcSqlStat sqlStat = dsStats.createSqlStat(sql);
+        for (int i = 0; i < times; i++) {
+            sqlStat.incrementExecuteSuccessCount();
+        }
+        return sqlStat;
+    }
+
+    private double executeCount(String label) {
+        return registry.get(MybatisMetrics.METRIC_NAME_SQL_EXECUTE_COUNT).tag("sql", label).gauge().value();
+    }
+
+}
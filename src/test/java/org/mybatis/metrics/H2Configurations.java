@@ -0,0 +1,83 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Configurations over a fresh in-memory H2 database holding the {@code item} table of
+ * {@link ItemMapper}, with rows 1, 2 and 3.
+ */
+final class H2Configurations {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private H2Configurations() {
+    }
+
+    static Configuration create() {
+        UnpooledDataSource dataSource = new UnpooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:metrics" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(ItemMapper.class);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table item (id int primary key, name varchar(64))");
+            statement.execute("insert into item (id, name) values (1, 'a'), (2, 'b'), (3, 'c')");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return configuration;
+    }
+
+    /**
+     * Create a {@link MyBatisInterceptor} bound to {@code registry} and add it to the configuration.
+     * @param properties interceptor properties as {@code key=value}
+     */
+    static MyBatisInterceptor addInterceptor(Configuration configuration, MeterRegistry registry, String... properties) {
+        MyBatisInterceptor interceptor = new MyBatisInterceptor();
+        interceptor.setProperties(properties(properties));
+        interceptor.bindTo(registry);
+        configuration.addInterceptor(interceptor);
+        return interceptor;
+    }
+
+    static Properties properties(String... properties) {
+        Properties result = new Properties();
+        for (String property : properties) {
+            int separator = property.indexOf('=');
+            result.setProperty(property.substring(0, separator), property.substring(separator + 1));
+        }
+        return result;
+    }
+
+    /**
+     * A plugin that only proceeds, such as one registered before the metrics interceptors.
+     */
+    @Intercepts({
+            @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}),
+            @Signature(type = ResultSetHandler.class, method = "handleResultSets", args = {Statement.class}),
+    })
+    static class PassThroughPlugin implements Interceptor {
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            return invocation.proceed();
+        }
+
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.mybatis.metrics;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.util.List;
+
+/**
+ * Mapper of the {@code item} table created by {@link H2Configurations}.
+ */
+public interface ItemMapper {
+
+    String FIND_NAME = ItemMapper.class.getName() + ".findName";
+    String FIND_IDS = ItemMapper.class.getName() + ".findIds";
+    String CURSOR_IDS = ItemMapper.class.getName() + ".cursorIds";
+    String INSERT = ItemMapper.class.getName() + ".insert";
+
+    @Select("select name from item where id = #{id}")
+    String findName(int id);
+
+    @Select("select id from item order by id")
+    List<Integer> findIds();
+
+    @Select("select id from item order by id")
+    Cursor<Integer> cursorIds();
+
+    @Insert("insert into item (id, name) values (#{id}, #{name})")
+    int insert(@Param("id") int id, @Param("name") String name);
+
+}
@@ -0,0 +1,64 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocalCacheMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void countsRepeatedSelectAsHit() {
+        Configuration configuration = H2Configurations.create();
+        H2Configurations.addInterceptor(configuration, registry, "cacheMetrics=true");
+        findNameTwice(configuration);
+        assertEquals(1, localCacheCount("hit"));
+        assertEquals(1, localCacheCount("miss"));
+    }
+
+    @Test
+    void countsMissBehindAnotherPlugin() {
+        Configuration configuration = H2Configurations.create();
+        configuration.addInterceptor(new H2Configurations.PassThroughPlugin());
+        H2Configurations.addInterceptor(configuration, registry, "cacheMetrics=true");
+        findNameTwice(configuration);
+        assertEquals(1, localCacheCount("hit"));
+        assertEquals(1, localCacheCount("miss"));
+    }
+
+    @Test
+    void countsMissAfterClearCache() {
+        Configuration configuration = H2Configurations.create();
+        H2Configurations.addInterceptor(configuration, registry, "cacheMetrics=true");
+        try (SqlSession session = new SqlSessionFactoryBuilder().build(configuration).openSession()) {
+            ItemMapper mapper = session.getMapper(ItemMapper.class);
+            mapper.findName(1);
+            session.clearCache();
+            mapper.findName(1);
+        }
+        assertEquals(0, localCacheCount("hit"));
+        assertEquals(2, localCacheCount("miss"));
+    }
+
+    private static void findNameTwice(Configuration configuration) {
+        try (SqlSession session = new SqlSessionFactoryBuilder().build(configuration).openSession()) {
+            ItemMapper mapper = session.getMapper(ItemMapper.class);
+            assertEquals("a", mapper.findName(1));
+            assertEquals("a", mapper.findName(1));
+        }
+    }
+
+    private double localCacheCount(String result) {
+        return registry.get(MybatisMetrics.METRIC_NAME_LOCAL_CACHE_REQUESTS)
+                .tag("class", ItemMapper.FIND_NAME)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MeterRegistrationTest {
+
+    @Test
+    void unregisteredConfigurationGetsUnknownTags() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Configuration configuration = H2Configurations.create();
+        H2Configurations.addInterceptor(configuration, registry);
+        findName(configuration);
+        assertEquals(1, registry.get(MybatisMetrics.METRIC_NAME_REQUESTS)
+                .tag("class", ItemMapper.FIND_NAME)
+                .tag(StatementTags.FACTORY, StatementTags.UNKNOWN)
+                .tag(StatementTags.DATASOURCE, StatementTags.UNKNOWN)
+                .timer()
+                .count());
+    }
+
+    @Test
+    void statementRunsWhenItsTimerIsRejected() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        //Prometheus 拒绝同名但标签键不同的指标
+        Timer.builder(MybatisMetrics.METRIC_NAME_REQUESTS).tag("other", "x").register(registry);
+        Configuration configuration = H2Configurations.create();
+        H2Configurations.addInterceptor(configuration, registry);
+        findName(configuration);
+        findName(configuration);
+    }
+
+    @Test
+    void statementRunsWhenItsConcurrencyGaugeIsRejected() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        Gauge.builder(MybatisMetrics.METRIC_NAME_INFLIGHT, () -> 0).tag("other", "x").register(registry);
+        Configuration configuration = H2Configurations.create();
+        MybatisMetricsInterceptor interceptor = new MybatisMetricsInterceptor();
+        interceptor.setProperties(new Properties());
+        interceptor.bindTo(registry);
+        configuration.addInterceptor(interceptor);
+        findName(configuration);
+        findName(configuration);
+    }
+
+    private static void findName(Configuration configuration) {
+        try (SqlSession session = new SqlSessionFactoryBuilder().build(configuration).openSession()) {
+            assertEquals("a", session.getMapper(ItemMapper.class).findName(1));
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MybatisMetricsInterceptorTest {
+
+    @Test
+    void registersNothingBeforeBindTo() {
+        Configuration configuration = H2Configurations.create();
+        MybatisMetricsInterceptor interceptor = new MybatisMetricsInterceptor();
+        interceptor.setProperties(new Properties());
+        configuration.addInterceptor(interceptor);
+        findName(configuration);
+        assertNull(Metrics.globalRegistry.find(MybatisMetrics.METRIC_NAME_INFLIGHT).tag("operation", ItemMapper.FIND_NAME).gauge());
+    }
+
+    @Test
+    void movesMetersOnRebind() {
+        Configuration configuration = H2Configurations.create();
+        MybatisMetricsInterceptor interceptor = new MybatisMetricsInterceptor();
+        interceptor.setProperties(new Properties());
+        SimpleMeterRegistry first = new SimpleMeterRegistry();
+        interceptor.bindTo(first);
+        configuration.addInterceptor(interceptor);
+        findName(configuration);
+        assertNotNull(first.find(MybatisMetrics.METRIC_NAME_INFLIGHT).tag("operation", ItemMapper.FIND_NAME).gauge());
+
+        SimpleMeterRegistry second = new SimpleMeterRegistry();
+        interceptor.bindTo(second);
+        assertNull(first.find(MybatisMetrics.METRIC_NAME_INFLIGHT).tag("operation", ItemMapper.FIND_NAME).gauge());
+        findName(configuration);
+        assertEquals(0, second.get(MybatisMetrics.METRIC_NAME_INFLIGHT).tag("operation", ItemMapper.FIND_NAME).gauge().value());
+    }
+
+    private static void findName(Configuration configuration) {
+        try (SqlSession session = new SqlSessionFactoryBuilder().build(configuration).openSession()) {
+            assertEquals("a", session.getMapper(ItemMapper.class).findName(1));
+        }
+    }
+
+}
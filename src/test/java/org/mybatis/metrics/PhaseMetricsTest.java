@@ -0,0 +1,51 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PhaseMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void recordsEveryPhaseOfAQuery() {
+        Configuration configuration = H2Configurations.create();
+        H2Configurations.addInterceptor(configuration, registry, "phases=true");
+        findName(configuration);
+        for (MybatisMetricsPhaseEnum phase : MybatisMetricsPhaseEnum.values()) {
+            assertEquals(1, phaseCount(ItemMapper.FIND_NAME, phase), phase.getCode());
+        }
+    }
+
+    @Test
+    void recordsPhasesBehindAnotherPlugin() {
+        Configuration configuration = H2Configurations.create();
+        //先注册的插件位于内层，本拦截器收到的是其 JDK 代理
+        configuration.addInterceptor(new H2Configurations.PassThroughPlugin());
+        H2Configurations.addInterceptor(configuration, registry, "phases=true");
+        findName(configuration);
+        for (MybatisMetricsPhaseEnum phase : MybatisMetricsPhaseEnum.values()) {
+            assertEquals(1, phaseCount(ItemMapper.FIND_NAME, phase), phase.getCode());
+        }
+    }
+
+    private static void findName(Configuration configuration) {
+        try (SqlSession session = new SqlSessionFactoryBuilder().build(configuration).openSession()) {
+            assertEquals("a", session.getMapper(ItemMapper.class).findName(1));
+        }
+    }
+
+    private long phaseCount(String statementId, MybatisMetricsPhaseEnum phase) {
+        return registry.get(MybatisMetrics.METRIC_NAME_PHASE)
+                .tag("class", statementId)
+                .tag("phase", phase.getCode())
+                .timer()
+                .count();
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.mybatis.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordRingTest {
+
+    @Test
+    void rejectsCapacitiesThatAreNotPowersOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new RecordRing(0, Thread.currentThread()));
+        assertThrows(IllegalArgumentException.class, () -> new RecordRing(6, Thread.currentThread()));
+        assertEquals(8, new RecordRing(8, Thread.currentThread()).capacity());
+    }
+
+    @Test
+    void dropsEntriesWhileFull() {
+        RecordRing ring = new RecordRing(4, Thread.currentThread());
+        for (long i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i, i * 10));
+        }
+        assertFalse(ring.offer(4, 40));
+        assertEquals(4, ring.size());
+
+        List<long[]> drained = new ArrayList<>();
+        assertEquals(4, ring.drain((key, value) -> drained.add(new long[] { key, value })));
+        assertEquals(4, drained.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, drained.get(i)[0]);
+            assertEquals(i * 10L, drained.get(i)[1]);
+        }
+        assertEquals(0, ring.size());
+        assertTrue(ring.offer(4, 40));
+    }
+
+    @Test
+    void keepsOrderAcrossWrapAround() {
+        RecordRing ring = new RecordRing(4, Thread.currentThread());
+        List<Long> keys = new ArrayList<>();
+        long next = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(ring.offer(next, -next));
+                next++;
+            }
+            ring.drain((key, value) -> {
+                assertEquals(-key, value);
+                keys.add(key);
+            });
+        }
+        assertEquals(30, keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i, keys.get(i).longValue());
+        }
+    }
+
+    @Test
+    void consumerSeesEveryEntryOfAConcurrentProducer() throws InterruptedException {
+        final int total = 1_000_000;
+        RecordRing[] ring = new RecordRing[1];
+        Thread producer = new Thread(() -> {
+            for (long i = 0; i < total; i++) {
+                while (!ring[0].offer(i, i)) {
+                    //缓冲区满时等待消费者
+                    Thread.yield();
+                }
+            }
+        });
+        ring[0] = new RecordRing(64, producer);
+        producer.start();
+        long[] expected = new long[1];
+        while (expected[0] < total) {
+            ring[0].drain((key, value) -> {
+                assertEquals(expected[0], key);
+                assertEquals(key, value);
+                expected[0]++;
+            });
+        }
+        producer.join();
+        assertEquals(0, ring[0].size());
+        assertTrue(ring[0].isAbandoned());
+    }
+
+    @Test
+    void isAbandonedOnlyOnceTheProducerEndedAndTheRingIsEmpty() throws InterruptedException {
+        Thread producer = new Thread(() -> { });
+        RecordRing ring = new RecordRing(2, producer);
+        producer.start();
+        producer.join();
+        assertTrue(ring.isAbandoned());
+
+        RecordRing live = new RecordRing(2, Thread.currentThread());
+        live.offer(1, 1);
+        assertFalse(live.isAbandoned());
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.mybatis.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SessionTrackerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SqlSessionFactory sessionFactory;
+
+    @BeforeEach
+    void setUp() {
+        Configuration configuration = H2Configurations.create();
+        H2Configurations.addInterceptor(configuration, registry, "sessionTracking=true", "sessionRepeatThreshold=2");
+        sessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @Test
+    void countsStatementsPerTransactionAndFlagsRepeats() {
+        try (SqlSession session = sessionFactory.openSession()) {
+            ItemMapper mapper = session.getMapper(ItemMapper.class);
+            mapper.findName(1);
+            mapper.findName(2);
+            mapper.findName(3);
+            mapper.findIds();
+            session.commit();
+        }
+        DistributionSummary statements = registry.get(MybatisMetrics.METRIC_NAME_SESSION_STATEMENTS).summary();
+        assertEquals(1, statements.count());
+        assertEquals(4, statements.totalAmount());
+        assertEquals(1, registry.get(MybatisMetrics.METRIC_NAME_SESSION_REPEATED_STATEMENTS)
+                .tag("class", ItemMapper.FIND_NAME)
+                .counter()
+                .count());
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_SESSION_REPEATED_STATEMENTS)
+                .tag("class", ItemMapper.FIND_IDS)
+                .counter());
+    }
+
+    @Test
+    void doesNotCountLocalCacheHits() {
+        try (SqlSession session = sessionFactory.openSession()) {
+            ItemMapper mapper = session.getMapper(ItemMapper.class);
+            mapper.findName(1);
+            mapper.findName(1);
+            mapper.findName(1);
+            session.commit();
+        }
+        assertEquals(1, registry.get(MybatisMetrics.METRIC_NAME_SESSION_STATEMENTS).summary().totalAmount());
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_SESSION_REPEATED_STATEMENTS).counter());
+    }
+
+    @Test
+    void startsOverAfterEachTransaction() {
+        try (SqlSession session = sessionFactory.openSession()) {
+            ItemMapper mapper = session.getMapper(ItemMapper.class);
+            mapper.findName(1);
+            mapper.findName(2);
+            session.commit();
+            mapper.findName(3);
+            session.rollback();
+        }
+        DistributionSummary statements = registry.get(MybatisMetrics.METRIC_NAME_SESSION_STATEMENTS).summary();
+        assertEquals(2, statements.count());
+        assertEquals(3, statements.totalAmount());
+        assertNull(registry.find(MybatisMetrics.METRIC_NAME_SESSION_REPEATED_STATEMENTS).counter());
+    }
+
+}
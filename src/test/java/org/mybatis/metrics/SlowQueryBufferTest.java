@@ -0,0 +1,98 @@
+package org.mybatis.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowQueryBufferTest {
+
+    private static final long WINDOW = TimeUnit.HOURS.toNanos(1);
+
+    @Test
+    void keepsTheSlowestEntriesSlowestFirst() {
+        SlowQueryBuffer buffer = new SlowQueryBuffer(2, 1, TimeUnit.HOURS);
+        long now = System.nanoTime();
+        buffer.add(query(10), now);
+        buffer.add(query(30), now);
+        buffer.add(query(20), now);
+        buffer.add(query(5), now);
+        assertEquals(Arrays.asList(30L, 20L), elapsed(buffer.current()));
+    }
+
+    @Test
+    void admitsOnlyEntriesSlowerThanTheFastestOnceFull() {
+        SlowQueryBuffer buffer = new SlowQueryBuffer(2, 1, TimeUnit.HOURS);
+        long now = System.nanoTime();
+        assertTrue(buffer.admits(1, now));
+        buffer.add(query(10), now);
+        assertTrue(buffer.admits(1, now));
+        buffer.add(query(30), now);
+        assertFalse(buffer.admits(10, now));
+        assertTrue(buffer.admits(11, now));
+    }
+
+    @Test
+    void movesTheEntriesToPreviousWhenTheWindowEnds() {
+        SlowQueryBuffer buffer = new SlowQueryBuffer(2, 1, TimeUnit.HOURS);
+        long now = System.nanoTime();
+        buffer.add(query(10), now);
+        buffer.add(query(30), now);
+        long later = now + WINDOW;
+        assertTrue(buffer.admits(1, later));
+        buffer.add(query(1), later);
+        assertEquals(Arrays.asList(30L, 10L), elapsed(buffer.previous()));
+        assertEquals(Arrays.asList(1L), elapsed(buffer.current()));
+    }
+
+    @Test
+    void readingAfterTheWindowEndsRotatesAnIdleBuffer() {
+        SlowQueryBuffer buffer = new SlowQueryBuffer(2, 1, TimeUnit.HOURS);
+        long now = System.nanoTime();
+        buffer.add(query(10), now);
+        long later = now + WINDOW;
+        assertEquals(Arrays.asList(10L), elapsed(buffer.previous(later)));
+        assertEquals(Arrays.asList(), elapsed(buffer.current(later)));
+        assertTrue(buffer.admits(1, later));
+    }
+
+    @Test
+    void concurrentWritersKeepTheGlobalSlowest() throws InterruptedException {
+        SlowQueryBuffer buffer = new SlowQueryBuffer(4, 1, TimeUnit.HOURS);
+        long now = System.nanoTime();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    long elapsed = i * 4L + offset;
+                    if (buffer.admits(elapsed, now)) {
+                        buffer.add(query(elapsed), now);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Arrays.asList(40_003L, 40_002L, 40_001L, 40_000L), elapsed(buffer.current()));
+    }
+
+    private static SlowQuery query(long elapsedNanos) {
+        return new SlowQuery("test.select", "select 1", elapsedNanos, "main", 0L);
+    }
+
+    private static List<Long> elapsed(List<SlowQuery> queries) {
+        return queries.stream().map(SlowQuery::getElapsedNanos).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.mybatis.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving<String>(0));
+    }
+
+    @Test
+    void countsExactlyUntilFull() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(3);
+        assertNull(sketch.offer("a", 5));
+        assertNull(sketch.offer("b", 2));
+        assertNull(sketch.offer("a", 1));
+        assertEquals(6, sketch.count("a"));
+        assertEquals(0, sketch.error("a"));
+        assertEquals(Arrays.asList("a", "b"), sketch.guaranteedTop(3));
+    }
+
+    @Test
+    void newKeyTakesOverTheSmallestCounterAndItsError() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(2);
+        sketch.offer("a", 5);
+        sketch.offer("b", 2);
+        assertEquals("b", sketch.offer("c", 1));
+        assertFalse(sketch.contains("b"));
+        assertEquals(3, sketch.count("c"));
+        assertEquals(2, sketch.error("c"));
+    }
+
+    @Test
+    void evictsTheMinimumAfterUpdatesAndRemovals() {
+        SpaceSaving<Integer> sketch = new SpaceSaving<>(16);
+        Map<Integer, Long> counts = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(64);
+            if (random.nextInt(10) == 0) {
+                sketch.remove(key);
+                counts.remove(key);
+                continue;
+            }
+            long weight = random.nextInt(5);
+            long min = counts.size() == 16 && !counts.containsKey(key)
+                    ? counts.values().stream().mapToLong(Long::longValue).min().getAsLong()
+                    : -1;
+            Integer evicted = sketch.offer(key, weight);
+            if (evicted != null) {
+                assertEquals(min, counts.remove(evicted).longValue());
+            }
+            counts.put(key, sketch.count(key));
+            assertTrue(counts.size() <= 16);
+        }
+    }
+
+    @Test
+    void guaranteesTheHeavyHittersOfASkewedStream() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(10);
+        long[] heavyWeights = { 10, 9, 8, 7, 6 };
+        for (int i = 0; i < 10_000; i++) {
+            sketch.offer("light" + i, 1);
+            if (i % 10 == 0) {
+                for (int h = 0; h < heavyWeights.length; h++) {
+                    sketch.offer("heavy" + h, heavyWeights[h]);
+                }
+            }
+        }
+        List<String> top = sketch.guaranteedTop(5);
+        assertEquals(Arrays.asList("heavy0", "heavy1", "heavy2", "heavy3", "heavy4"), top);
+        for (int h = 0; h < heavyWeights.length; h++) {
+            long trueWeight = heavyWeights[h] * 1_000;
+            String key = "heavy" + h;
+            assertTrue(sketch.count(key) - sketch.error(key) <= trueWeight);
+            assertTrue(sketch.count(key) >= trueWeight);
+        }
+        //刚接管被淘汰计数器的 key 不在确定的 top-K 中
+        assertTrue(sketch.guaranteedTop(6).size() <= 5);
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.mybatis.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SqlShapesTest {
+
+    @Test
+    void countsDistinctTextsOnce() {
+        SqlShapes shapes = new SqlShapes(16);
+        shapes.add("select * from t where id = ?");
+        shapes.add("select * from t where id = ?");
+        shapes.add("select * from t where id in (?, ?)");
+        shapes.add("");
+        assertEquals(3, shapes.size());
+    }
+
+    @Test
+    void stopsGrowingAtTheLimit() {
+        SqlShapes shapes = new SqlShapes(4);
+        for (int i = 0; i < 100; i++) {
+            shapes.add("select " + i);
+        }
+        assertEquals(4, shapes.size());
+        shapes.add("select 0");
+        assertEquals(4, shapes.size());
+    }
+
+    @Test
+    void concurrentWritersCountEachTextOnce() throws InterruptedException {
+        SqlShapes shapes = new SqlShapes(1024);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int round = 0; round < 100; round++) {
+                    for (int i = 0; i < 500; i++) {
+                        shapes.add("select * from t where id in (" + i + ")");
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(500, shapes.size());
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.mybatis.metrics;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementFilterTest {
+
+    private final Configuration configuration = new Configuration();
+
+    @Test
+    void includesEverythingWithoutPatterns() {
+        StatementFilter filter = StatementFilter.from(H2Configurations.properties());
+        assertTrue(filter.isIncluded(statement("a.UserMapper.select"), new StatementFilter.Decision()));
+    }
+
+    @Test
+    void appliesIncludesThenExcludes() {
+        StatementFilter filter = StatementFilter.from(H2Configurations.properties(
+                "includes=a.UserMapper.*, a.OrderMapper.find?", "excludes=*.selectAll"));
+        assertTrue(filter.isIncluded(statement("a.UserMapper.select"), new StatementFilter.Decision()));
+        assertTrue(filter.isIncluded(statement("a.OrderMapper.find1"), new StatementFilter.Decision()));
+        assertFalse(filter.isIncluded(statement("a.OrderMapper.find12"), new StatementFilter.Decision()));
+        assertFalse(filter.isIncluded(statement("a.UserMapper.selectAll"), new StatementFilter.Decision()));
+        assertFalse(filter.isIncluded(statement("a.ItemMapper.select"), new StatementFilter.Decision()));
+    }
+
+    @Test
+    void killSwitchExcludesEverything() {
+        StatementFilter filter = StatementFilter.from(H2Configurations.properties("enabled=false"));
+        assertFalse(filter.isEnabled());
+        assertFalse(filter.isIncluded(statement("a.UserMapper.select"), new StatementFilter.Decision()));
+    }
+
+    @Test
+    void cachedDecisionFollowsUpdates() {
+        StatementFilter filter = StatementFilter.from(H2Configurations.properties("excludes=a.UserMapper.*"));
+        MappedStatement statement = statement("a.UserMapper.select");
+        StatementFilter.Decision decision = new StatementFilter.Decision();
+        assertFalse(filter.isIncluded(statement, decision));
+        assertFalse(filter.isIncluded(statement, decision));
+        filter.update(null, null, Collections.singletonList("a.OrderMapper.*"));
+        assertTrue(filter.isIncluded(statement, decision));
+        filter.update(null, Arrays.asList("b.*"), null);
+        assertFalse(filter.isIncluded(statement, decision));
+    }
+
+    @Test
+    void cachedDecisionIsNotReusedByAnotherFilter() {
+        MappedStatement statement = statement("a.UserMapper.select");
+        StatementFilter.Decision decision = new StatementFilter.Decision();
+        StatementFilter excluding = StatementFilter.from(H2Configurations.properties("excludes=a.UserMapper.*"));
+        assertFalse(excluding.isIncluded(statement, decision));
+        StatementFilter including = StatementFilter.from(H2Configurations.properties("includes=a.*"));
+        assertTrue(including.isIncluded(statement, decision));
+    }
+
+    private MappedStatement statement(String id) {
+        return new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, "select 1"),
+                SqlCommandType.SELECT).build();
+    }
+
+}
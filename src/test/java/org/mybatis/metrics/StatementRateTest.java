@@ -0,0 +1,71 @@
+package org.mybatis.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementRateTest {
+
+    private static final long TICK = TimeUnit.SECONDS.toNanos(StatementRate.TICK_SECONDS);
+    private static final double DECAY = Math.exp(-StatementRate.TICK_SECONDS / 60D);
+
+    @Test
+    void tickIsDueOnTheGrid() {
+        StatementRate rate = new StatementRate(0, false);
+        assertFalse(rate.isTickDue(TICK - 1));
+        assertTrue(rate.isTickDue(TICK));
+        rate.update(0, 0, TICK + TICK / 2);
+        assertFalse(rate.isTickDue(2 * TICK - 1));
+        assertTrue(rate.isTickDue(2 * TICK));
+    }
+
+    @Test
+    void firstTickSetsTheRate() {
+        StatementRate rate = new StatementRate(0, false);
+        rate.update(10, 50, TICK);
+        assertEquals(2, rate.getCallsPerSecond(), 1e-9);
+        assertEquals(10, rate.getNanosPerSecond(), 1e-9);
+    }
+
+    @Test
+    void updateWithinATickIsANoOp() {
+        StatementRate rate = new StatementRate(0, false);
+        rate.update(10, 0, TICK);
+        rate.update(20, 0, TICK + 1);
+        assertEquals(2, rate.getCallsPerSecond(), 1e-9);
+    }
+
+    @Test
+    void timedCallsChargeGrowthToTheFirstTickThenDecay() {
+        StatementRate rate = new StatementRate(0, false);
+        rate.update(30, 0, 3 * TICK);
+        assertEquals(6 * DECAY * DECAY, rate.getCallsPerSecond(), 1e-9);
+    }
+
+    @Test
+    void untimedCallsSpreadGrowthOverTheElapsedTicks() {
+        StatementRate rate = new StatementRate(0, true);
+        rate.update(30, 0, 3 * TICK);
+        assertEquals(2, rate.getCallsPerSecond(), 1e-9);
+        rate.update(30, 0, 5 * TICK);
+        assertEquals(2 * DECAY * DECAY, rate.getCallsPerSecond(), 1e-9);
+    }
+
+    @Test
+    void spreadingMatchesTickingEveryInterval() {
+        StatementRate spread = new StatementRate(0, true);
+        StatementRate ticked = new StatementRate(0, true);
+        spread.update(50, 0, TICK);
+        ticked.update(50, 0, TICK);
+        spread.update(80, 0, 4 * TICK);
+        for (int tick = 2; tick <= 4; tick++) {
+            ticked.update(50 + 10 * (tick - 1), 0, tick * TICK);
+        }
+        assertEquals(ticked.getCallsPerSecond(), spread.getCallsPerSecond(), 1e-9);
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.mybatis.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WeightedHistogramTest {
+
+    private static final Duration[] BOUNDS = { Duration.ofMillis(10), Duration.ofMillis(100) };
+
+    private final WeightedHistogram histogram = new WeightedHistogram(BOUNDS, 1, TimeUnit.MINUTES, 6);
+
+    @Test
+    void countsEveryCallAndWeightsTimedOnes() {
+        histogram.recordUntimed();
+        histogram.recordUntimed();
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5), 3, 0);
+        assertEquals(3, histogram.count());
+        assertEquals(0.015, histogram.totalTime(TimeUnit.SECONDS), 1e-12);
+    }
+
+    @Test
+    void bucketsAreCumulativeAndClampedToTheCount() {
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5), 4, 0);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(50), 4, 0);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(500), 4, 0);
+        assertEquals(2, histogram.bucketCount());
+        //加权后的桶计数（4、8）大于实际调用数 3，截断为 count
+        assertEquals(3, histogram.cumulativeCount(0));
+        assertEquals(3, histogram.cumulativeCount(1));
+    }
+
+    @Test
+    void bucketBoundsAreInclusive() {
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(10), 1, 0);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(10) + 1, 1, 0);
+        assertEquals(1, histogram.cumulativeCount(0));
+        assertEquals(2, histogram.cumulativeCount(1));
+    }
+
+    @Test
+    void maxIsTheSlowestTimedCallOfTheWindow() {
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(7), 1, 0);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3), 100, 0);
+        assertEquals(0.007, histogram.max(0, TimeUnit.SECONDS), 1e-12);
+        assertEquals(0, histogram.max(TimeUnit.MINUTES.toNanos(2), TimeUnit.SECONDS));
+    }
+
+    @Test
+    void maxRoundsUpToTheMicrosecond() {
+        histogram.record(1, 1, 0);
+        assertEquals(1000, histogram.max(0, TimeUnit.NANOSECONDS));
+    }
+
+}
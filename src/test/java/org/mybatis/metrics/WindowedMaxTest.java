@@ -0,0 +1,101 @@
+package org.mybatis.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WindowedMaxTest {
+
+    private static final long SLOT = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void keepsTheLargestValueOfTheWindow() {
+        WindowedMax max = new WindowedMax(3, TimeUnit.SECONDS, 3);
+        max.record(5, 0);
+        max.record(9, SLOT);
+        max.record(7, 2 * SLOT);
+        assertEquals(9, max.get(2 * SLOT));
+    }
+
+    @Test
+    void forgetsSlotsThatLeftTheWindow() {
+        WindowedMax max = new WindowedMax(3, TimeUnit.SECONDS, 3);
+        max.record(9, 0);
+        max.record(4, SLOT);
+        assertEquals(9, max.get(2 * SLOT));
+        assertEquals(4, max.get(3 * SLOT));
+        assertEquals(0, max.get(4 * SLOT));
+    }
+
+    @Test
+    void reusedSlotStartsFromTheNewValue() {
+        WindowedMax max = new WindowedMax(2, TimeUnit.SECONDS, 2);
+        max.record(100, 0);
+        max.record(3, 2 * SLOT);
+        assertEquals(3, max.get(2 * SLOT));
+    }
+
+    @Test
+    void ignoresObservationsOlderThanTheirSlot() {
+        WindowedMax max = new WindowedMax(2, TimeUnit.SECONDS, 2);
+        max.record(3, 2 * SLOT);
+        max.record(100, 0);
+        assertEquals(3, max.get(2 * SLOT));
+    }
+
+    @Test
+    void recordsIntoASlotLastWrittenHalfA16BitRangeAgo() {
+        WindowedMax max = new WindowedMax(2, TimeUnit.SECONDS, 2);
+        max.record(100, 0);
+        max.record(3, 32_770 * SLOT);
+        assertEquals(3, max.get(32_770 * SLOT));
+    }
+
+    @Test
+    void doesNotAliasASlotWrittenA16BitRangeAgo() {
+        WindowedMax max = new WindowedMax(2, TimeUnit.SECONDS, 2);
+        max.record(100, 0);
+        assertEquals(0, max.get(65_536 * SLOT));
+        assertEquals(0, max.get((1L << 31) * SLOT));
+    }
+
+    @Test
+    void clampsLargeValues() {
+        WindowedMax max = new WindowedMax(1, TimeUnit.SECONDS, 1);
+        max.record(Long.MAX_VALUE, 0);
+        max.record(WindowedMax.MAX_VALUE + 1, 0);
+        assertEquals(WindowedMax.MAX_VALUE, max.get(0));
+    }
+
+    @Test
+    void ignoresNonPositiveValues() {
+        WindowedMax max = new WindowedMax(1, TimeUnit.SECONDS, 1);
+        max.record(0, 0);
+        max.record(-5, 0);
+        assertEquals(0, max.get(0));
+    }
+
+    @Test
+    void concurrentWritersDoNotLoseThePeak() throws InterruptedException {
+        WindowedMax max = new WindowedMax(1, TimeUnit.HOURS, 4);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 1; i <= 100_000; i++) {
+                    max.record(i * 4L + offset, 0);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_003, max.get(0));
+    }
+
+}